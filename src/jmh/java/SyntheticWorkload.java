@@ -0,0 +1,111 @@
+import java.util.Random;
+
+/**
+ * <b>SyntheticWorkload</b> builds a fully connected CurrencyWeb of made-up currencies whose rates come from in-memory
+ * listeners, like the MockAPI in mainMockAPI, so the benchmarks never touch the network. Rates are consistent up to a
+ * small random spread, so the web contains a few arbitrage cycles.
+ */
+public class SyntheticWorkload implements benchmarks.Workload {
+
+    private static final long SEED = 42;
+    private static final double SPREAD = 0.002;
+
+    private String[] currencies;
+    private double[][] rates;
+    private double[] ratesToUSD;
+    private CurrencyWeb web;
+    private Path<String> path;
+
+    @Override
+    public void setUp(int size) {
+        Random random = new Random(SEED);
+        currencies = new String[size];
+        rates = new double[size][size];
+        ratesToUSD = new double[size];
+        for (int i = 0; i < size; i++) {
+            currencies[i] = "" + (char) ('A' + i / 676) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+            ratesToUSD[i] = 0.001 + random.nextDouble() * 4;
+        }
+        for (int base = 0; base < size; base++) {
+            for (int quote = 0; quote < size; quote++) {
+                rates[base][quote] = ratesToUSD[base] / ratesToUSD[quote]
+                        * (1 - SPREAD + random.nextDouble() * SPREAD * 1.1);
+            }
+        }
+
+        web = new CurrencyWeb();
+        for (int base = 0; base < size; base++) {
+            for (int quote = base + 1; quote < size; quote++) {
+                web.addExchangeRate(currencies[base], currencies[quote],
+                        listener(base, quote), listener(quote, base));
+            }
+        }
+        web.refreshRates();
+
+        path = new Path<>(currencies[0], ratesToUSD[0]);
+        for (int i = 1; i < size; i++) {
+            path = path.extend(currencies[i], rates[i - 1][i], ratesToUSD[i]);
+        }
+    }
+
+    private GetRateListener listener(int base, int quote) {
+        return new GetRateListener() {
+            @Override
+            public double getRate() {
+                return rates[base][quote];
+            }
+
+            @Override
+            public double getRateToUSD() {
+                return ratesToUSD[quote];
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return currencies.length;
+    }
+
+    @Override
+    public String findPath(int start, int dest) {
+        return web.arbitragePathJSON(currencies[start], currencies[dest]);
+    }
+
+    @Override
+    public Object findArbitrageCycles() {
+        return web.findArbitrageCycles();
+    }
+
+    @Override
+    public Object refreshRates() {
+        web.refreshRates();
+        return web.getRateSnapshot();
+    }
+
+    @Override
+    public Object connectNodes() {
+        Graph<String, GetRateListener> graph = new Graph<>();
+        for (String currency : currencies) {
+            graph.addNode(currency);
+        }
+        for (int base = 0; base < currencies.length; base++) {
+            for (int quote = 0; quote < currencies.length; quote++) {
+                if (base != quote) {
+                    graph.connectNodes(currencies[base], currencies[quote], listener(base, quote));
+                }
+            }
+        }
+        return graph;
+    }
+
+    @Override
+    public Object extendPath(int newEnd) {
+        return path.extend(currencies[newEnd], rates[currencies.length - 1][newEnd], ratesToUSD[newEnd]);
+    }
+
+    @Override
+    public String pathToJSON() {
+        return path.toJSON();
+    }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the searches of a CurrencyWeb over a fully connected synthetic web, with rates already captured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CurrencyWebBenchmark {
+
+    @Param({"10", "50", "160", "1000"})
+    public int currencies;
+
+    private Workload workload;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workload.load();
+        workload.setUp(currencies);
+    }
+
+    @Benchmark
+    public String findPath() {
+        // walk through different pairs so one lucky pair does not dominate
+        next = (next + 1) % currencies;
+        return workload.findPath(next, (next * 7 + 1) % currencies);
+    }
+
+    @Benchmark
+    public Object findArbitrageCycles() {
+        return workload.findArbitrageCycles();
+    }
+
+    @Benchmark
+    public Object refreshRates() {
+        return workload.refreshRates();
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Path.extend and Path.toJSON on a path through every synthetic currency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathBenchmark {
+
+    @Param({"10", "50", "160", "1000"})
+    public int currencies;
+
+    private Workload workload;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        workload = Workload.load();
+        workload.setUp(currencies);
+    }
+
+    @Benchmark
+    public Object extend() {
+        next = (next + 1) % currencies;
+        return workload.extendPath(next);
+    }
+
+    @Benchmark
+    public String toJSON() {
+        return workload.pathToJSON();
+    }
+}
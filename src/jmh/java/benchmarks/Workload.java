@@ -0,0 +1,65 @@
+package benchmarks;
+
+/**
+ * <b>Workload</b> is what the benchmarks measure. JMH does not allow benchmarks in the default package, and classes in
+ * a named package cannot refer to the default package where CurrencyWeb, Graph and Path live, so the benchmarks call
+ * them through this interface. It is implemented by SyntheticWorkload in the default package, which is loaded by name
+ * once per trial.
+ */
+public interface Workload {
+
+    /**
+     * Builds a fully connected web of the given number of synthetic currencies, with in-memory rate listeners
+     *
+     * @param currencies the number of currencies in the web
+     */
+    void setUp(int currencies);
+
+    /**
+     * @return the number of currencies in the web
+     */
+    int size();
+
+    /**
+     * Runs CurrencyWeb.arbitragePathJSON between the currencies at the given indices
+     */
+    String findPath(int start, int dest);
+
+    /**
+     * Runs CurrencyWeb.findArbitrageCycles
+     */
+    Object findArbitrageCycles();
+
+    /**
+     * Runs CurrencyWeb.refreshRates, which asks every listener in the web for its rate
+     */
+    Object refreshRates();
+
+    /**
+     * Builds a new Graph of the web's currencies and connects every pair with Graph.connectNodes
+     */
+    Object connectNodes();
+
+    /**
+     * Runs Path.extend on a path through every currency in the web
+     */
+    Object extendPath(int newEnd);
+
+    /**
+     * Runs Path.toJSON on a path through every currency in the web
+     */
+    String pathToJSON();
+
+    /**
+     * Loads the default-package implementation of this interface
+     *
+     * @return a new, empty workload
+     */
+    static Workload load() {
+        try {
+            return (Workload) Class.forName("SyntheticWorkload").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("SyntheticWorkload is not on the classpath", e);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <b>AllPairsConversions</b> is an <b>immutable</b> table of the best conversion between every pair of currencies in a
+ * RateSnapshot. Each rate BASE/QUOTE is an edge weighted by -log(rate), so the best conversion from one currency to
+ * another is a shortest path, and all of them are found at once with Floyd-Warshall. The table keeps the length of
+ * every shortest path and the first hop along it, so the route between any two currencies is read off in time
+ * proportional to its length.
+ * <p>
+ * The n by n distances are split into BLOCK by BLOCK tiles that fit in cache, and Floyd-Warshall is run tile by tile:
+ * for each diagonal tile, the tile itself is updated first, then every tile in its row and column, then every other
+ * tile. The tiles of each of the last two steps are independent of one another and are updated in parallel on a
+ * ForkJoinPool.
+ * <p>
+ * If the snapshot contains arbitrage, the best conversion between currencies that can reach a profitable cycle is
+ * unbounded, and route returns null for them.
+ */
+public class AllPairsConversions {
+
+    /**
+     * The side of a tile. 64 by 64 doubles is 32 KiB, so the three tiles an update reads stay in L2 cache.
+     */
+    static final int BLOCK = 64;
+
+    /**
+     * How far (relative to its length) a route may be from the shortest distance before it is treated as distorted by
+     * a profitable cycle.
+     */
+    private static final double TOLERANCE = 1e-9;
+
+    private final RateSnapshot rates;
+    private final int size;
+
+    /**
+     * distances[base * size + quote] is -log of the best rate BASE/QUOTE over any route, or infinity if there is none.
+     */
+    private final double[] distances;
+
+    /**
+     * nextHops[base * size + quote] is the currency after base on the best route from base to quote, or -1 if there
+     * is none.
+     */
+    private final int[] nextHops;
+
+    private AllPairsConversions(RateSnapshot rates, double[] distances, int[] nextHops) {
+        this.rates = rates;
+        this.size = rates.size();
+        this.distances = distances;
+        this.nextHops = nextHops;
+    }
+
+    /**
+     * Computes the best conversion between every pair of currencies in the snapshot, on the common ForkJoinPool
+     *
+     * @param rates the rates to convert with
+     * @return the best conversions in rates
+     */
+    public static AllPairsConversions compute(RateSnapshot rates) {
+        return compute(rates, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the best conversion between every pair of currencies in the snapshot
+     *
+     * @param rates the rates to convert with
+     * @param pool the pool the tiles are updated on
+     * @return the best conversions in rates
+     */
+    public static AllPairsConversions compute(RateSnapshot rates, ForkJoinPool pool) {
+        int size = rates.size();
+        double[] distances = new double[size * size];
+        int[] nextHops = new int[size * size];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(nextHops, -1);
+        for (int base = 0; base < size; base++) {
+            distances[base * size + base] = 0;
+            nextHops[base * size + base] = base;
+            for (int quote = 0; quote < size; quote++) {
+                if (rates.hasRate(base, quote)) {
+                    distances[base * size + quote] = -Math.log(rates.getRate(base, quote));
+                    nextHops[base * size + quote] = quote;
+                }
+            }
+        }
+
+        int blocks = (size + BLOCK - 1) / BLOCK;
+        int others = Math.max(0, blocks - 1);
+        int[] rowBlocks = new int[2 * others];
+        int[] columnBlocks = new int[2 * others];
+        int[] otherRowBlocks = new int[others * others];
+        int[] otherColumnBlocks = new int[others * others];
+        for (int pivot = 0; pivot < blocks; pivot++) {
+            updateBlock(distances, nextHops, size, pivot, pivot, pivot);
+
+            int count = 0;
+            for (int block = 0; block < blocks; block++) {
+                if (block != pivot) {
+                    rowBlocks[count] = pivot;
+                    columnBlocks[count++] = block;
+                    rowBlocks[count] = block;
+                    columnBlocks[count++] = pivot;
+                }
+            }
+            pool.invoke(new BlockUpdates(distances, nextHops, size, pivot, rowBlocks, columnBlocks, 0, count));
+
+            count = 0;
+            for (int row = 0; row < blocks; row++) {
+                for (int column = 0; column < blocks; column++) {
+                    if (row != pivot && column != pivot) {
+                        otherRowBlocks[count] = row;
+                        otherColumnBlocks[count++] = column;
+                    }
+                }
+            }
+            pool.invoke(new BlockUpdates(distances, nextHops, size, pivot, otherRowBlocks, otherColumnBlocks, 0,
+                    count));
+        }
+        return new AllPairsConversions(rates, distances, nextHops);
+    }
+
+    /**
+     * Relaxes every path in tile (rowBlock, columnBlock) through the currencies of tile pivot
+     */
+    private static void updateBlock(double[] distances, int[] nextHops, int size, int rowBlock, int columnBlock,
+                                    int pivot) {
+        int rowEnd = Math.min(size, (rowBlock + 1) * BLOCK);
+        int columnStart = columnBlock * BLOCK;
+        int columnEnd = Math.min(size, columnStart + BLOCK);
+        int pivotEnd = Math.min(size, (pivot + 1) * BLOCK);
+        for (int via = pivot * BLOCK; via < pivotEnd; via++) {
+            int viaRow = via * size;
+            for (int base = rowBlock * BLOCK; base < rowEnd; base++) {
+                int baseRow = base * size;
+                double toVia = distances[baseRow + via];
+                if (toVia == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                int hop = nextHops[baseRow + via];
+                for (int quote = columnStart; quote < columnEnd; quote++) {
+                    double distance = toVia + distances[viaRow + quote];
+                    if (distance < distances[baseRow + quote]) {
+                        distances[baseRow + quote] = distance;
+                        nextHops[baseRow + quote] = hop;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the snapshot the conversions were computed from
+     */
+    public RateSnapshot getRates() {
+        return rates;
+    }
+
+    /**
+     * @param base the index of the base currency
+     * @param quote the index of the quote currency
+     * @return the best rate BASE/QUOTE over any route, 0 if quote cannot be reached from base, or infinity if a
+     * profitable cycle makes it unbounded
+     */
+    public double getBestRate(int base, int quote) {
+        return Math.exp(-distances[base * size + quote]);
+    }
+
+    /**
+     * Returns the best route from base to quote
+     *
+     * @param base the index of the base currency
+     * @param quote the index of the quote currency
+     * @return the indices of the currencies along the route, starting with base and ending with quote, or null if
+     * {@code base == quote}, quote cannot be reached from base, or a profitable cycle makes the best route unbounded
+     */
+    public int[] route(int base, int quote) {
+        double distance = distances[base * size + quote];
+        if (base == quote || distance == Double.POSITIVE_INFINITY || !(distance > Double.NEGATIVE_INFINITY)) {
+            return null;
+        }
+
+        // a route is at most size currencies long unless it is going around a cycle
+        int[] route = new int[size];
+        int length = 0;
+        double routeDistance = 0;
+        route[length++] = base;
+        for (int current = base; current != quote; ) {
+            int next = nextHops[current * size + quote];
+            if (next == -1 || length == size) {
+                return null;
+            }
+            routeDistance -= Math.log(rates.getRate(current, next));
+            route[length++] = next;
+            current = next;
+        }
+
+        // a profitable cycle reachable along the way leaves distance below what any route can achieve
+        if (Math.abs(routeDistance - distance) > TOLERANCE * Math.max(1, Math.abs(distance))) {
+            return null;
+        }
+        return Arrays.copyOf(route, length);
+    }
+
+    /**
+     * Updates the tiles at (rowBlocks[i], columnBlocks[i]) for i from start to end, splitting the range in half until
+     * a single tile is left
+     */
+    private static class BlockUpdates extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] distances;
+        private final int[] nextHops;
+        private final int size;
+        private final int pivot;
+        private final int[] rowBlocks;
+        private final int[] columnBlocks;
+        private final int start;
+        private final int end;
+
+        private BlockUpdates(double[] distances, int[] nextHops, int size, int pivot, int[] rowBlocks,
+                             int[] columnBlocks, int start, int end) {
+            this.distances = distances;
+            this.nextHops = nextHops;
+            this.size = size;
+            this.pivot = pivot;
+            this.rowBlocks = rowBlocks;
+            this.columnBlocks = columnBlocks;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= 1) {
+                if (end > start) {
+                    updateBlock(distances, nextHops, size, rowBlocks[start], columnBlocks[start], pivot);
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new BlockUpdates(distances, nextHops, size, pivot, rowBlocks, columnBlocks, start, middle),
+                    new BlockUpdates(distances, nextHops, size, pivot, rowBlocks, columnBlocks, middle, end));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <b>ArbitrageDetector</b> finds profitable cycles of exchange rates. Each rate BASE/QUOTE becomes an edge from base
+ * to quote weighted by -log(rate), so a cycle whose rates multiply to more than 1 is exactly a negative cycle. Negative
+ * cycles are found with SPFA (queue-based Bellman-Ford) from a virtual source connected to every currency. Every
+ * V relaxations the parent pointers are checked for a cycle, which lets the search stop as soon as a negative cycle has
+ * formed instead of running all V rounds, and bounds it by O(V*E) in the worst case.
+ */
+public class ArbitrageDetector {
+
+    /**
+     * Improvements smaller than this (in log space) are ignored, so rounding error is never reported as arbitrage.
+     */
+    private static final double EPSILON = 1e-12;
+
+    private final int size;
+
+    /**
+     * The edges between currencies, weighted by rate.
+     */
+    private final CsrGraph<String> rateGraph;
+
+    /**
+     * weights[edge] is -log(rate) of the edge with that number in rateGraph.
+     */
+    private final double[] weights;
+
+    /**
+     * Builds a detector over the rates in the given snapshot
+     *
+     * @param rates the rates to search
+     */
+    public ArbitrageDetector(RateSnapshot rates) {
+        size = rates.size();
+        rateGraph = rates.getRateGraph();
+        weights = new double[rateGraph.edgeCount()];
+        for (int edge = 0; edge < weights.length; edge++) {
+            weights[edge] = -Math.log(rateGraph.getWeight(edge));
+        }
+    }
+
+    /**
+     * Finds profitable cycles. The search stops at the first point where the shortest path tree contains a cycle, and
+     * returns every cycle in the tree at that point, so it may not return every arbitrage cycle in the web.
+     *
+     * @return a list of cycles, each given as the currency indices along the cycle in order, without repeating the
+     * first currency at the end. The list is empty iff there is no arbitrage.
+     */
+    public List<int[]> findCycles() {
+        double[] distances = new double[size];
+        int[] parents = new int[size];
+        Arrays.fill(parents, -1);
+
+        // ring buffer holding each currency at most once
+        int[] queue = new int[size];
+        boolean[] queued = new boolean[size];
+        int head = 0;
+        int count = size;
+        for (int i = 0; i < size; i++) {
+            queue[i] = i;
+            queued[i] = true;
+        }
+
+        long relaxations = 0;
+        while (count > 0) {
+            int base = queue[head];
+            head = (head + 1) % size;
+            count--;
+            queued[base] = false;
+
+            for (int edge = rateGraph.getOutGoingStart(base); edge < rateGraph.getOutGoingEnd(base); edge++) {
+                int quote = rateGraph.getTarget(edge);
+                double distance = distances[base] + weights[edge];
+                if (distance < distances[quote] - EPSILON) {
+                    distances[quote] = distance;
+                    parents[quote] = base;
+                    relaxations++;
+                    if (relaxations % size == 0) {
+                        List<int[]> cycles = findParentCycles(parents);
+                        if (!cycles.isEmpty()) {
+                            return cycles;
+                        }
+                    }
+                    if (!queued[quote]) {
+                        queue[(head + count) % size] = quote;
+                        queued[quote] = true;
+                        count++;
+                    }
+                }
+            }
+        }
+        return findParentCycles(parents);
+    }
+
+    /**
+     * Returns every profitable cycle formed by the given parent pointers
+     */
+    private List<int[]> findParentCycles(int[] parents) {
+        List<int[]> cycles = new ArrayList<>();
+        // walk[node] is the walk that first reached node, or -1 if no walk has
+        int[] walk = new int[size];
+        Arrays.fill(walk, -1);
+        for (int start = 0; start < size; start++) {
+            int node = start;
+            while (node != -1 && walk[node] == -1) {
+                walk[node] = start;
+                node = parents[node];
+            }
+            if (node != -1 && walk[node] == start) {
+                int[] cycle = extractCycle(parents, node);
+                if (logProduct(cycle) > 0) {
+                    cycles.add(cycle);
+                }
+            }
+        }
+        return cycles;
+    }
+
+    /**
+     * Returns the cycle of parent pointers through the given node, in edge order
+     */
+    private int[] extractCycle(int[] parents, int node) {
+        int length = 1;
+        for (int current = parents[node]; current != node; current = parents[current]) {
+            length++;
+        }
+        int[] cycle = new int[length];
+        int current = node;
+        for (int i = length - 1; i >= 0; i--) {
+            cycle[i] = current;
+            current = parents[current];
+        }
+        return cycle;
+    }
+
+    /**
+     * Returns the log of the product of the rates around the given cycle, which is positive iff the cycle is profitable
+     */
+    private double logProduct(int[] cycle) {
+        double logProduct = 0;
+        for (int i = 0; i < cycle.length; i++) {
+            int base = cycle[i];
+            int quote = cycle[(i + 1) % cycle.length];
+            double weight = Double.POSITIVE_INFINITY;
+            for (int edge = rateGraph.getOutGoingStart(base); edge < rateGraph.getOutGoingEnd(base); edge++) {
+                if (rateGraph.getTarget(edge) == quote) {
+                    weight = Math.min(weight, weights[edge]);
+                }
+            }
+            logProduct -= weight;
+        }
+        return logProduct;
+    }
+}
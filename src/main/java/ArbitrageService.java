@@ -0,0 +1,297 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <b>ArbitrageService</b> is a long-running HTTP service that answers arbitrage queries over rates fetched from
+ * ExchangeRateAPI. It serves
+ * <ul>
+ *     <li>GET /arbitrage?from=BASE&amp;to=QUOTE, the JSON of the best conversion from BASE to QUOTE, as
+ *     CurrencyWeb#arbitragePathJSON returns it</li>
+ *     <li>GET /cycles[?limit=10&amp;maxHops=4&amp;minProfit=0], a JSON array of the most profitable cycles, as
+ *     CurrencyWeb#findTopCycles finds them, with limit at most MAX_CYCLE_LIMIT and maxHops at most MAX_HOPS_LIMIT</li>
+ * </ul>
+ * Every response carries the version of the rates it was answered from in an X-Rates-Version header.
+ * <p>
+ * Every refresh fetches a new RateSnapshot in the background and pushes it into the service's CurrencyWeb with
+ * onRates, which publishes the new version only once its all-pairs conversions are computed. A query reads the
+ * current version once and answers entirely from it, so queries run concurrently on a thread pool without locks,
+ * never wait for a refresh, and never see rates from two different refreshes. A failed refresh is reported and the
+ * previous rates keep being served.
+ */
+public class ArbitrageService implements AutoCloseable {
+
+    public static final int DEFAULT_CYCLE_LIMIT = 10;
+    public static final int DEFAULT_MAX_HOPS = 4;
+
+    /**
+     * The largest limit a /cycles query may ask for
+     */
+    public static final int MAX_CYCLE_LIMIT = 100;
+
+    /**
+     * The largest maxHops a /cycles query may ask for. The search is exponential in maxHops, so a larger value could
+     * keep a query thread busy indefinitely.
+     */
+    public static final int MAX_HOPS_LIMIT = 6;
+    public static final String VERSION_HEADER = "X-Rates-Version";
+
+    private final List<String> currencies;
+    private final long refreshPeriodMillis;
+    private final CurrencyWeb web;
+
+    private HttpServer server;
+    private ExecutorService queryExecutor;
+    private ScheduledExecutorService refresher;
+
+    /**
+     * Response bodies are written into a buffer per query thread, so their length is known before they are sent
+     */
+    private final ThreadLocal<ByteArrayOutputStream> bodies = ThreadLocal.withInitial(ByteArrayOutputStream::new);
+    private final ThreadLocal<PathJsonWriter> writers = ThreadLocal.withInitial(PathJsonWriter::new);
+
+    /**
+     * Constructs a service that has not started
+     *
+     * @param currencies the currencies to fetch the rates between
+     * @param refreshPeriodMillis how long to wait between the start of one refresh and the next, in milliseconds
+     * @throws IllegalArgumentException if {@code refreshPeriodMillis < 1}
+     */
+    public ArbitrageService(List<String> currencies, long refreshPeriodMillis) {
+        if (refreshPeriodMillis < 1) {
+            throw new IllegalArgumentException("refreshPeriodMillis must be positive");
+        }
+        this.currencies = new ArrayList<>(currencies);
+        this.refreshPeriodMillis = refreshPeriodMillis;
+        this.web = new CurrencyWeb(Math.max(CurrencyWeb.DEFAULT_LIVE_CAPACITY, currencies.size()));
+        web.setAllPairsEnabled(true);
+    }
+
+    /**
+     * Fetches the first rates, then starts serving queries and refreshing the rates every refresh period
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @param threads the most queries answered at once
+     * @throws IOException if the server cannot be started
+     * @throws CompletionException if the first rates cannot be fetched
+     * @throws IllegalStateException if the service has already been started
+     * @throws IllegalArgumentException if {@code threads < 1}
+     */
+    public synchronized void start(int port, int threads) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("service already started");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        web.onRates(ExchangeRateAPI.fetchSnapshotAsync(currencies).join(), System.currentTimeMillis());
+
+        AtomicInteger queryThreads = new AtomicInteger();
+        queryExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "arbitrage-query-" + queryThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(queryExecutor);
+        server.createContext("/arbitrage", this::handleArbitrage);
+        server.createContext("/cycles", this::handleCycles);
+        server.start();
+
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "arbitrage-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleAtFixedRate(this::refresh, refreshPeriodMillis, refreshPeriodMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the port the service listens on
+     * @throws IllegalStateException if the service has not been started
+     */
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("service not started");
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the web queries are answered from, which every successful refresh pushes a new version of the rates into
+     *
+     * @return the web queries are answered from
+     */
+    public CurrencyWeb getWeb() {
+        return web;
+    }
+
+    /**
+     * Stops serving queries and refreshing rates
+     */
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            queryExecutor.shutdownNow();
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Fetches new rates and pushes them into the web as one version. A failed refresh is reported and skipped, so the
+     * next refresh still runs.
+     */
+    private void refresh() {
+        // an exception escaping a scheduled task would cancel every later refresh
+        try {
+            web.onRates(ExchangeRateAPI.fetchSnapshotAsync(currencies).join(), System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void handleArbitrage(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respondError(exchange, 405, "method not allowed");
+                return;
+            }
+            Map<String, String> query;
+            try {
+                query = parseQuery(exchange);
+            } catch (IllegalArgumentException e) {
+                respondError(exchange, 400, "malformed query");
+                return;
+            }
+            String from = query.get("from");
+            String to = query.get("to");
+            if (from == null || to == null) {
+                respondError(exchange, 400, "from and to are required");
+                return;
+            }
+            RateSnapshot rates = web.getRateSnapshot();
+            Path<String> path;
+            try {
+                path = web.findArbitragePath(rates, from, to);
+            } catch (IllegalArgumentException e) {
+                respondError(exchange, 404, "unknown currency");
+                return;
+            }
+            if (path == null) {
+                respondError(exchange, 404, "no conversion between the given currencies");
+                return;
+            }
+            ByteArrayOutputStream body = bodies.get();
+            body.reset();
+            writers.get().write(path, body);
+            exchange.getResponseHeaders().set(VERSION_HEADER, Long.toString(rates.getVersion()));
+            respond(exchange, 200, body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleCycles(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respondError(exchange, 405, "method not allowed");
+                return;
+            }
+            Map<String, String> query;
+            try {
+                query = parseQuery(exchange);
+            } catch (IllegalArgumentException e) {
+                respondError(exchange, 400, "malformed query");
+                return;
+            }
+            int limit;
+            int maxHops;
+            double minProfit;
+            try {
+                limit = Integer.parseInt(query.getOrDefault("limit", String.valueOf(DEFAULT_CYCLE_LIMIT)));
+                maxHops = Integer.parseInt(query.getOrDefault("maxHops", String.valueOf(DEFAULT_MAX_HOPS)));
+                minProfit = Double.parseDouble(query.getOrDefault("minProfit", "0"));
+            } catch (NumberFormatException e) {
+                respondError(exchange, 400, "limit, maxHops and minProfit must be numbers");
+                return;
+            }
+            if (limit > MAX_CYCLE_LIMIT || maxHops > MAX_HOPS_LIMIT) {
+                respondError(exchange, 400,
+                        "limit must be at most " + MAX_CYCLE_LIMIT + " and maxHops at most " + MAX_HOPS_LIMIT);
+                return;
+            }
+            RateSnapshot rates = web.getRateSnapshot();
+            List<Path<String>> cycles;
+            try {
+                cycles = web.findTopCycles(rates, limit, maxHops, minProfit);
+            } catch (IllegalArgumentException e) {
+                respondError(exchange, 400, "limit must be positive and maxHops at least 2");
+                return;
+            }
+            ByteArrayOutputStream body = bodies.get();
+            body.reset();
+            writers.get().writeAll(cycles, body);
+            exchange.getResponseHeaders().set(VERSION_HEADER, Long.toString(rates.getVersion()));
+            respond(exchange, 200, body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Decodes the query string of a request. A parameter given more than once keeps its last value.
+     *
+     * @throws IllegalArgumentException if the query has an invalid escape, e.g. %zz
+     */
+    private static Map<String, String> parseQuery(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Responds with {"error": message}, where message is plain text that needs no escaping
+     */
+    private void respondError(HttpExchange exchange, int status, String message) throws IOException {
+        ByteArrayOutputStream body = bodies.get();
+        body.reset();
+        body.write(("{\"error\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8));
+        respond(exchange, status, body);
+    }
+
+    private static void respond(HttpExchange exchange, int status, ByteArrayOutputStream body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <b>CsrGraph</b> is an <b>immutable</b>, int-indexed view of a Graph in compressed sparse row form. Nodes are
+ * numbered 0 to size() - 1, and the edges out of each node are stored next to each other in parallel primitive arrays
+ * of targets and weights, so scanning the neighbors of a node reads two contiguous arrays instead of a hash set of
+ * Edge objects.
+ * <p>
+ * The outgoing edges of node are the edges numbered getOutGoingStart(node) (inclusive) to getOutGoingEnd(node)
+ * (exclusive).
+ */
+public class CsrGraph<N> {
+
+    /**
+     * The node with each id, or null for an id without a node.
+     */
+    private final List<N> nodes;
+
+    /**
+     * The id of each node.
+     */
+    private final Map<N, Integer> ids;
+
+    /**
+     * The edges out of node are numbered offsets[node] to offsets[node + 1]. Has size() + 1 entries.
+     */
+    private final int[] offsets;
+
+    /**
+     * The id of the child of each edge.
+     */
+    private final int[] targets;
+
+    /**
+     * The weight of each edge.
+     */
+    private final double[] weights;
+
+    /**
+     * Constructs a CsrGraph from arrays laid out as described by the fields of this class
+     *
+     * @spec.requires {@code offsets.length == nodes.size() + 1 && targets.length == weights.length
+     *                && targets.length == offsets[nodes.size()]}
+     */
+    CsrGraph(List<N> nodes, int[] offsets, int[] targets, double[] weights) {
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.ids = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            if (nodes.get(i) != null) {
+                ids.put(nodes.get(i), i);
+            }
+        }
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * @return the number of nodes in this
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return the number of edges in this
+     */
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Returns the id of the given node
+     *
+     * @param node the node to look up
+     * @return the id of node, or -1 if {@code !contains(node)}
+     */
+    public int idOf(N node) {
+        Integer id = ids.get(node);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id the id of a node
+     * @return the node with the given id, or null if no node has the id
+     */
+    public N getNode(int id) {
+        return nodes.get(id);
+    }
+
+    /**
+     * @return every node in this, in id order
+     */
+    public List<N> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @param node the id of a node
+     * @return the number of the first edge out of node
+     */
+    public int getOutGoingStart(int node) {
+        return offsets[node];
+    }
+
+    /**
+     * @param node the id of a node
+     * @return one past the number of the last edge out of node
+     */
+    public int getOutGoingEnd(int node) {
+        return offsets[node + 1];
+    }
+
+    /**
+     * @param edge the number of an edge
+     * @return the id of the child of the edge
+     */
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    /**
+     * @param edge the number of an edge
+     * @return the weight of the edge
+     */
+    public double getWeight(int edge) {
+        return weights[edge];
+    }
+}
@@ -0,0 +1,161 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <b>CurrencyRegistry</b> is a thread-safe, grow-only mapping between currency codes and dense int ids 0 to
+ * size() - 1, in the order the currencies were first interned. Ids let rates, searches and paths work on arrays
+ * indexed by currency instead of hashing Strings.
+ * <p>
+ * A code of three letters A-Z, like every ISO 4217 code, packs into a 15 bit int (5 bits per letter), and the id of a
+ * packed code is read straight out of a table indexed by the packed code, so looking up an ISO code never hashes or
+ * compares Strings. Any other String still works as a code, through an ordinary hash map.
+ */
+public class CurrencyRegistry {
+
+    /**
+     * The number of distinct packed codes; every packed code is between 0 and PACKED_CODES - 1.
+     */
+    public static final int PACKED_CODES = 1 << 15;
+
+    private static final int BITS_PER_LETTER = 5;
+    private static final int LETTER_MASK = (1 << BITS_PER_LETTER) - 1;
+
+    /**
+     * packedIds[packed code] is one more than the id of that code, or 0 if the code has not been interned.
+     */
+    private final AtomicIntegerArray packedIds;
+
+    /**
+     * The ids of interned codes that cannot be packed.
+     */
+    private final ConcurrentHashMap<String, Integer> otherIds;
+
+    /**
+     * The code with each id. Replaced by a larger copy when full; only replaced while holding this.
+     */
+    private volatile AtomicReferenceArray<String> codes;
+
+    private volatile int size;
+
+    /**
+     * Constructs an empty registry
+     */
+    public CurrencyRegistry() {
+        packedIds = new AtomicIntegerArray(PACKED_CODES);
+        otherIds = new ConcurrentHashMap<>();
+        codes = new AtomicReferenceArray<>(16);
+    }
+
+    /**
+     * Packs a three letter code into an int
+     *
+     * @param code the code to pack
+     * @return the code packed into 15 bits, or -1 if code is not three letters A-Z
+     */
+    public static int pack(String code) {
+        if (code.length() != 3) {
+            return -1;
+        }
+        int packed = 0;
+        for (int i = 0; i < 3; i++) {
+            char letter = code.charAt(i);
+            if (letter < 'A' || letter > 'Z') {
+                return -1;
+            }
+            packed = (packed << BITS_PER_LETTER) | (letter - 'A');
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks a code packed by pack
+     *
+     * @param packed a packed code
+     * @return the three letter code packed into packed
+     * @throws IllegalArgumentException if packed is not a packed code
+     */
+    public static String unpack(int packed) {
+        if (packed < 0 || packed >= PACKED_CODES) {
+            throw new IllegalArgumentException("not a packed code: " + packed);
+        }
+        char[] letters = new char[3];
+        for (int i = 2; i >= 0; i--) {
+            int letter = packed & LETTER_MASK;
+            if (letter >= 26) {
+                throw new IllegalArgumentException("not a packed code: " + packed);
+            }
+            letters[i] = (char) ('A' + letter);
+            packed >>>= BITS_PER_LETTER;
+        }
+        return new String(letters);
+    }
+
+    /**
+     * Returns the id of the given code, giving it the next id if it has not been interned before
+     *
+     * @param code the code to look up
+     * @spec.modifies this
+     * @return the id of code
+     */
+    public int intern(String code) {
+        int id = idOf(code);
+        if (id != -1) {
+            return id;
+        }
+        synchronized (this) {
+            id = idOf(code);
+            if (id != -1) {
+                return id;
+            }
+            id = size;
+            AtomicReferenceArray<String> currentCodes = codes;
+            if (id == currentCodes.length()) {
+                AtomicReferenceArray<String> grownCodes = new AtomicReferenceArray<>(2 * id);
+                for (int i = 0; i < id; i++) {
+                    grownCodes.set(i, currentCodes.get(i));
+                }
+                codes = grownCodes;
+                currentCodes = grownCodes;
+            }
+            // publish the code before the id, so a reader that finds the id also finds the code
+            currentCodes.set(id, code);
+            size = id + 1;
+            int packed = pack(code);
+            if (packed != -1) {
+                packedIds.set(packed, id + 1);
+            } else {
+                otherIds.put(code, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @param code the code to look up
+     * @return the id of code, or -1 if it has not been interned
+     */
+    public int idOf(String code) {
+        int packed = pack(code);
+        if (packed != -1) {
+            return packedIds.get(packed) - 1;
+        }
+        Integer id = otherIds.get(code);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id an id between 0 and size() - 1
+     * @return the code with the given id
+     */
+    public String getCode(int id) {
+        return codes.get(id);
+    }
+
+    /**
+     * @return the number of codes interned so far
+     */
+    public int size() {
+        return size;
+    }
+}
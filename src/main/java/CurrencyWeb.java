@@ -1,16 +1,120 @@
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * CurrencyWeb is a <b>Graph</b> that keeps tracks of various exchange rates passed in, and can find arbitrage opportunities between two currencies
- *
+ * <p>
+ * Rates can also be pushed into the web as a RateSink. Pushed rates are stored in a StripedRateStore, and the first
+ * rate between two currencies adds an exchange rate whose listeners read from that store, so searches only ever read
+ * local memory.
+ * <p>
+ * Every currency is interned in a CurrencyRegistry when it first enters the web, and the snapshot and every search
+ * index currencies by their ids, so currency codes are only looked up at the web's public methods. The live store
+ * numbers pushed currencies on its own, so currencies added through addExchangeRate never use up its capacity.
+ * <p>
+ * A CurrencyWeb is <b>thread-safe</b>. Every write to the web (an added exchange rate, a pushed rate or a refresh) is
+ * numbered with the next version. Searches never read the mutable graph: they read an immutable RateSnapshot of one
+ * version, published through an AtomicReference, so any number of searches run without locks alongside writers, and
+ * each sees one consistent set of rates. Each search can be given the snapshot to search, and the snapshot's
+ * getVersion() tells which version its results are for.
+ * <p>
+ * Writes hold the write lock, and a snapshot is only captured while holding it. onRates and refreshRates capture the
+ * new version, and its all-pairs conversions in all-pairs mode, before publishing it in one step, so searches keep
+ * reading the previous version until the new one is complete. A search never waits for the write lock: if the web
+ * changed since the last capture and no write is in progress, it captures and publishes the new version itself,
+ * and otherwise it reads the version already published.
+ * <p>
+ * A pushed rate between two currencies that were pushed before only locks its base currency's row of the store and
+ * marks the web as having pending rates, so feeds pushing different base currencies never contend, and the next
+ * capture numbers all pending rates with one new version.
  */
-public class CurrencyWeb {
+public class CurrencyWeb implements RateSink {
+    public static final int DEFAULT_LIVE_CAPACITY = 256;
+    private static final String USD = "USD";
+
     private Graph<String, GetRateListener> graph;
-    private Map<String, GetRateListener> toUSDPriceListeners;
+    private final CurrencyRegistry registry;
+
+    /**
+     * The listener at the id of each currency has a getRateToUSD() that returns CURRENCY/USD.
+     */
+    private List<GetRateListener> toUSDPriceListeners;
+
+    /**
+     * Guards every change to graph and toUSDPriceListeners, every new pair of pushed currencies, and every capture of a
+     * snapshot. Searches only ever try it, and never wait for it.
+     */
+    private final ReentrantLock writeLock;
+
+    /**
+     * The version of the latest write to the web. Only incremented while holding writeLock.
+     */
+    private final AtomicLong version;
+
+    /**
+     * The latest captured snapshot, only set while holding writeLock. It is current iff its version is version and
+     * there are no pending rates.
+     */
+    private final AtomicReference<RateSnapshot> published;
+    private volatile boolean allPairsEnabled;
+
+    /**
+     * The scanner over the rates of the latest triangular search, or null if there has not been one.
+     */
+    private volatile TriangleScanner triangleScanner;
+
+    /**
+     * The enumerator over the rates of the latest top cycle search, or null if there has not been one.
+     */
+    private volatile CycleEnumerator cycleEnumerator;
+    private final int liveCapacity;
+
+    /**
+     * The store of pushed rates, or null until the first rate is pushed, so webs that are never pushed to do not pay
+     * for it. Only created while holding writeLock, after livePairs.
+     */
+    private volatile StripedRateStore liveRates;
+
+    /**
+     * A bit set of the pairs of currencies that have been pushed to the web, with the pair of indices lower and higher
+     * at bit lower * liveCapacity + higher, or null until the first rate is pushed. Bits are only set while holding
+     * writeLock.
+     */
+    private volatile AtomicLongArray livePairs;
+
+    /**
+     * True if a rate was pushed between currencies that were pushed before since the last capture began.
+     */
+    private volatile boolean pendingRates;
+
+    /**
+     * The consistent copies of rows of liveRates the capture in progress reads from, or null when there is no capture
+     * in progress. Only used while holding writeLock.
+     */
+    private StripedRateStore.RowCopies captureRows;
 
     public CurrencyWeb() {
+        this(DEFAULT_LIVE_CAPACITY);
+    }
+
+    /**
+     * @param liveCapacity the most currencies that can be pushed to the web through onRate
+     * @throws IllegalArgumentException if {@code liveCapacity < 1}
+     */
+    public CurrencyWeb(int liveCapacity) {
+        if (liveCapacity < 1) {
+            throw new IllegalArgumentException("liveCapacity must be positive");
+        }
         graph = new Graph<>();
-        toUSDPriceListeners = new HashMap<>();
+        registry = new CurrencyRegistry();
+        toUSDPriceListeners = new ArrayList<>();
+        this.liveCapacity = liveCapacity;
+        writeLock = new ReentrantLock();
+        version = new AtomicLong();
+        published = new AtomicReference<>(RateSnapshot.capture(graph, toUSDPriceListeners, registry));
     }
 
     /**
@@ -21,25 +125,254 @@ public class CurrencyWeb {
      * @param quoteCurrencyListener the quote currency's listener
      */
     public void addExchangeRate(String baseCurrency, String quoteCurrency, GetRateListener baseCurrencyListener, GetRateListener quoteCurrencyListener) {
-        graph.addNode(baseCurrency);
-        graph.addNode(quoteCurrency);
-        graph.connectNodes(baseCurrency, quoteCurrency, baseCurrencyListener);
-        graph.connectNodes(quoteCurrency, baseCurrency, quoteCurrencyListener);
-        if (!toUSDPriceListeners.containsKey(baseCurrency)) {
-            toUSDPriceListeners.put(baseCurrency, quoteCurrencyListener);
+        writeLock.lock();
+        try {
+            int base = registry.intern(baseCurrency);
+            int quote = registry.intern(quoteCurrency);
+            graph.addNode(baseCurrency);
+            graph.addNode(quoteCurrency);
+            graph.connectNodes(baseCurrency, quoteCurrency, baseCurrencyListener);
+            graph.connectNodes(quoteCurrency, baseCurrency, quoteCurrencyListener);
+            addUSDPriceListener(base, quoteCurrencyListener);
+            addUSDPriceListener(quote, baseCurrencyListener);
+            version.incrementAndGet();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Makes listener the USD price listener of the currency with the given id, unless it already has one
+     */
+    private void addUSDPriceListener(int currency, GetRateListener listener) {
+        while (toUSDPriceListeners.size() <= currency) {
+            toUSDPriceListeners.add(null);
+        }
+        if (toUSDPriceListeners.get(currency) == null) {
+            toUSDPriceListeners.set(currency, listener);
+        }
+    }
+
+    /**
+     * Stores a pushed rate, adding an exchange rate between the two currencies the first time they are pushed. The
+     * next capture reads the new rate.
+     *
+     * @param baseCurrency the base currency
+     * @param quoteCurrency the quote currency
+     * @param rate the rate BASE/QUOTE
+     * @param timestamp when the rate was observed, in milliseconds since the epoch
+     * @throws IllegalStateException if the currency is new and the web already holds liveCapacity pushed currencies
+     */
+    @Override
+    public void onRate(String baseCurrency, String quoteCurrency, double rate, long timestamp) {
+        StripedRateStore store = getLiveRates();
+        int base = store.intern(baseCurrency);
+        int quote = store.intern(quoteCurrency);
+        store.set(base, quote, rate, timestamp);
+        // the rate is stored before it is marked pending, so a capture that began before the rate was stored is
+        // always followed by another
+        if (!addLivePair(base, quote) && !pendingRates) {
+            pendingRates = true;
+        }
+    }
+
+    /**
+     * Stores every rate in the given snapshot as a pushed rate, in one write: no search sees some of the rates without
+     * the rest. The new version is captured and published before this returns, together with its all-pairs
+     * conversions in all-pairs mode, so no search waits to capture it.
+     *
+     * @param rates the rates to push
+     * @param timestamp when the rates were observed, in milliseconds since the epoch
+     * @return the snapshot of the version holding the rates
+     * @throws IllegalStateException if the rates hold new currencies and the web already holds liveCapacity pushed
+     *                               currencies
+     */
+    public RateSnapshot onRates(RateSnapshot rates, long timestamp) {
+        writeLock.lock();
+        try {
+            StripedRateStore store = getLiveRates();
+            int size = rates.size();
+            int[] ids = new int[size];
+            for (int index = 0; index < size; index++) {
+                String currency = rates.getCurrency(index);
+                ids[index] = currency == null ? -1 : store.intern(currency);
+            }
+            // each base currency's rates are stored in one write to its row
+            double[] row = new double[store.capacity()];
+            for (int base = 0; base < size; base++) {
+                if (ids[base] == -1) {
+                    continue;
+                }
+                Arrays.fill(row, 0);
+                for (int quote = 0; quote < size; quote++) {
+                    if (rates.hasRate(base, quote)) {
+                        row[ids[quote]] = rates.getRate(base, quote);
+                        addLivePair(ids[base], ids[quote]);
+                    }
+                }
+                store.setRow(ids[base], row, timestamp);
+            }
+            version.incrementAndGet();
+            return capture();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the store rates pushed through onRate are stored in, creating it if nothing has been pushed yet
+     *
+     * @return the store of pushed rates
+     */
+    public StripedRateStore getLiveRates() {
+        StripedRateStore store = liveRates;
+        if (store == null) {
+            writeLock.lock();
+            try {
+                store = liveRates;
+                if (store == null) {
+                    livePairs = new AtomicLongArray((int) (((long) liveCapacity * liveCapacity + 63) / 64));
+                    store = new StripedRateStore(liveCapacity);
+                    liveRates = store;
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Adds an exchange rate between the pushed currencies at base and quote, unless one was added before. Only called
+     * once the store of pushed rates exists.
+     *
+     * @return true iff the exchange rate was added
+     */
+    private boolean addLivePair(int base, int quote) {
+        long pair = (long) Math.min(base, quote) * liveCapacity + Math.max(base, quote);
+        int word = (int) (pair >>> 6);
+        long bit = 1L << pair;
+        if ((livePairs.get(word) & bit) != 0) {
+            return false;
+        }
+        writeLock.lock();
+        try {
+            long bits = livePairs.get(word);
+            if ((bits & bit) != 0) {
+                return false;
+            }
+            addExchangeRate(liveRates.getCurrency(base), liveRates.getCurrency(quote), liveListener(base, quote),
+                    liveListener(quote, base));
+            livePairs.set(word, bits | bit);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private GetRateListener liveListener(int base, int quote) {
+        return new GetRateListener() {
+            @Override
+            public double getRate() {
+                return liveRate(base, quote);
+            }
+
+            @Override
+            public double getRateToUSD() {
+                // without a pushed rate to USD, rates are compared in units of the quote currency itself
+                int usd = liveRates.indexOf(USD);
+                double rateToUSD = usd == -1 ? 0 : liveRate(quote, usd);
+                return rateToUSD > 0 ? rateToUSD : 1;
+            }
+        };
+    }
+
+    /**
+     * Returns the pushed rate BASE/QUOTE or the inverse of QUOTE/BASE, from the rows copied for the capture in progress
+     * if there is one
+     */
+    private double liveRate(int base, int quote) {
+        StripedRateStore.RowCopies rows = captureRows;
+        return rows != null ? rows.getRateOrInverse(base, quote) : liveRates.getRateOrInverse(base, quote);
+    }
+
+    /**
+     * Asks every listener in the web for its current rate, and uses those rates for all following searches
+     */
+    public void refreshRates() {
+        writeLock.lock();
+        try {
+            version.incrementAndGet();
+            capture();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the rates searches currently read from. If the web changed since the last capture and no write is in
+     * progress, the new version is captured and published first; a write in progress publishes its own version when
+     * it is done, so this never waits for one.
+     *
+     * @return the snapshot of the latest published version
+     */
+    public RateSnapshot getRateSnapshot() {
+        RateSnapshot rates = published.get();
+        if ((pendingRates || rates.getVersion() != version.get()) && writeLock.tryLock()) {
+            try {
+                rates = published.get();
+                if (pendingRates || rates.getVersion() != version.get()) {
+                    rates = capture();
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return rates;
+    }
+
+    /**
+     * Captures the web's latest version, computes its all-pairs conversions in all-pairs mode, and only then publishes
+     * it. Each pushed currency's row is read as of a single moment. Must be called while holding writeLock.
+     */
+    private RateSnapshot capture() {
+        if (pendingRates) {
+            pendingRates = false;
+            version.incrementAndGet();
         }
-        if (!toUSDPriceListeners.containsKey(quoteCurrency)) {
-            toUSDPriceListeners.put(quoteCurrency, baseCurrencyListener);
+        RateSnapshot rates;
+        StripedRateStore store = liveRates;
+        captureRows = store == null ? null : store.rowCopies();
+        try {
+            rates = RateSnapshot.capture(graph, toUSDPriceListeners, registry, version.get());
+        } finally {
+            captureRows = null;
         }
+        if (allPairsEnabled) {
+            rates.getAllPairs();
+        }
+        published.set(rates);
+        return rates;
+    }
 
+    /**
+     * Returns the registry that gives every currency in the web its id
+     * @return the registry of the web's currencies
+     */
+    public CurrencyRegistry getRegistry() {
+        return registry;
     }
 
     /**
-     * Returns the currencies in the graph
+     * Returns the currencies in the graph, read from the registry so this never waits for a write in progress
      * @return the currencies in the graph
      */
     public Set<String> getCurrencies() {
-        return graph.getNodes();
+        Set<String> currencies = new HashSet<>();
+        for (int id = registry.size() - 1; id >= 0; id--) {
+            currencies.add(registry.getCode(id));
+        }
+        return currencies;
     }
 
     /**
@@ -49,69 +382,286 @@ public class CurrencyWeb {
      * @return a json path with all the currencies in between
      */
     public String arbitragePathJSON(String start, String dest) {
-        Path<String> path = findPath(start, dest);
-        return path.toJSON();
+        return findArbitragePath(start, dest).toJSON();
+    }
+
+    /**
+     * Finds the best conversion from start to dest, reading it from getAllPairs() in all-pairs mode
+     *
+     * @param start the starting currency
+     * @param dest the ending currency
+     * @return a Path with all the currencies in between, or null if dest cannot be reached from start
+     * @throws IllegalArgumentException if start or dest are not currencies in the graph
+     */
+    public Path<String> findArbitragePath(String start, String dest) {
+        return findArbitragePath(getRateSnapshot(), start, dest);
+    }
+
+    /**
+     * Finds the best conversion from start to dest at the given rates, reading it from getAllPairs(rates) in
+     * all-pairs mode
+     *
+     * @param rates the rates to search, usually a snapshot from getRateSnapshot()
+     * @param start the starting currency
+     * @param dest the ending currency
+     * @return a Path with all the currencies in between, or null if dest cannot be reached from start
+     * @throws IllegalArgumentException if start or dest are not currencies in rates
+     */
+    public Path<String> findArbitragePath(RateSnapshot rates, String start, String dest) {
+        Path<String> path = allPairsEnabled ? lookupPath(rates, start, dest) : null;
+        if (path == null) {
+            path = findPath(rates, start, dest);
+        }
+        return path;
+    }
+
+    /**
+     * Turns all-pairs mode on or off. In all-pairs mode, the best conversion between every pair of currencies is
+     * computed with AllPairsConversions when each snapshot is captured, before it is published, and arbitragePathJSON
+     * reads routes from the snapshot's conversions instead of searching for each pair separately. This pays off when
+     * many pairs are searched between refreshes.
+     *
+     * @param enabled true to turn all-pairs mode on
+     */
+    public void setAllPairsEnabled(boolean enabled) {
+        allPairsEnabled = enabled;
+    }
+
+    /**
+     * Returns the best conversions between every pair of currencies at the web's current rates, computing them first
+     * unless they were computed for the current snapshot
+     *
+     * @return the best conversions at the current rates
+     */
+    public AllPairsConversions getAllPairs() {
+        return getAllPairs(getRateSnapshot());
+    }
+
+    /**
+     * Returns the best conversions between every pair of currencies at the given rates. They are kept with the
+     * snapshot, so they are computed at most once per snapshot however many searches read them.
+     *
+     * @param rates the rates to convert at, usually a snapshot from getRateSnapshot()
+     * @return the best conversions at the given rates
+     * @see RateSnapshot#getAllPairs()
+     */
+    public AllPairsConversions getAllPairs(RateSnapshot rates) {
+        return rates.getAllPairs();
+    }
+
+    /**
+     * Reads the best route from start to dest out of getAllPairs(rates)
+     *
+     * @return the Path along the route, or null if there is no usable route and findPath has to search instead
+     */
+    private Path<String> lookupPath(RateSnapshot rates, String start, String dest) {
+        AllPairsConversions conversions = getAllPairs(rates);
+        int startIndex = rates.indexOf(start);
+        int destIndex = rates.indexOf(dest);
+        if (startIndex == -1 || destIndex == -1) {
+            return null;
+        }
+        int[] route = conversions.route(startIndex, destIndex);
+        if (route == null) {
+            return null;
+        }
+        Path<String> path = new Path<>(start, rates.getRateToUSD(startIndex));
+        for (int i = 1; i < route.length; i++) {
+            path = path.extend(rates.getCurrency(route[i]), rates.getRate(route[i - 1], route[i]),
+                    rates.getRateToUSD(route[i]));
+        }
+        return path;
+    }
+
+    /**
+     * Finds cycles of exchange rates that end with more of the starting currency than they began with, using
+     * ArbitrageDetector
+     *
+     * @return the profitable cycles found, each as a Path from a currency back to itself, most profitable first
+     */
+    public List<Path<String>> findArbitrageCycles() {
+        return findArbitrageCycles(getRateSnapshot());
+    }
+
+    /**
+     * Finds the cycles findArbitrageCycles() finds, at the given rates
+     *
+     * @param rates the rates to search, usually a snapshot from getRateSnapshot()
+     * @return the profitable cycles found, each as a Path from a currency back to itself, most profitable first
+     */
+    public List<Path<String>> findArbitrageCycles(RateSnapshot rates) {
+        List<Path<String>> cycles = toCyclePaths(rates, new ArbitrageDetector(rates).findCycles());
+        cycles.sort(new PathComparator());
+        return cycles;
+    }
+
+    /**
+     * Finds the most profitable three-currency cycles A -> B -> C -> A, using TriangleScanner
+     *
+     * @param limit the most cycles to return
+     * @param minProfit the least profit a cycle must make, as a fraction of the starting amount
+     * @return at most limit profitable cycles, each as a Path from a currency back to itself, most profitable first
+     * @throws IllegalArgumentException if {@code limit < 1}
+     */
+    public List<Path<String>> findTriangularArbitrage(int limit, double minProfit) {
+        return findTriangularArbitrage(getRateSnapshot(), limit, minProfit);
+    }
+
+    /**
+     * Finds the cycles findTriangularArbitrage(limit, minProfit) finds, at the given rates
+     *
+     * @param rates the rates to search, usually a snapshot from getRateSnapshot()
+     * @param limit the most cycles to return
+     * @param minProfit the least profit a cycle must make, as a fraction of the starting amount
+     * @return at most limit profitable cycles, each as a Path from a currency back to itself, most profitable first
+     * @throws IllegalArgumentException if {@code limit < 1}
+     */
+    public List<Path<String>> findTriangularArbitrage(RateSnapshot rates, int limit, double minProfit) {
+        TriangleScanner scanner = triangleScanner;
+        if (scanner == null || scanner.getRates() != rates) {
+            scanner = new TriangleScanner(rates);
+            triangleScanner = scanner;
+        }
+        return toCyclePaths(rates, scanner.scan(limit, minProfit));
     }
 
     /**
-     * Finds arbitrage using Dijkstra's algorithm
+     * Finds the most profitable cycles of at most maxHops exchanges anywhere in the web, using CycleEnumerator
+     *
+     * @param limit the most cycles to return
+     * @param maxHops the most exchanges in a cycle
+     * @param minProfit the least profit a cycle must make, as a fraction of the starting amount
+     * @return at most limit profitable cycles, each as a Path from a currency back to itself, most profitable first
+     * @throws IllegalArgumentException if {@code limit < 1 || maxHops < 2}
+     */
+    public List<Path<String>> findTopCycles(int limit, int maxHops, double minProfit) {
+        return findTopCycles(getRateSnapshot(), limit, maxHops, minProfit);
+    }
+
+    /**
+     * Finds the cycles findTopCycles(limit, maxHops, minProfit) finds, at the given rates
+     *
+     * @param rates the rates to search, usually a snapshot from getRateSnapshot()
+     * @param limit the most cycles to return
+     * @param maxHops the most exchanges in a cycle
+     * @param minProfit the least profit a cycle must make, as a fraction of the starting amount
+     * @return at most limit profitable cycles, each as a Path from a currency back to itself, most profitable first
+     * @throws IllegalArgumentException if {@code limit < 1 || maxHops < 2}
+     */
+    public List<Path<String>> findTopCycles(RateSnapshot rates, int limit, int maxHops, double minProfit) {
+        CycleEnumerator enumerator = cycleEnumerator;
+        if (enumerator == null || enumerator.getRates() != rates) {
+            enumerator = new CycleEnumerator(rates);
+            cycleEnumerator = enumerator;
+        }
+        return toCyclePaths(rates, enumerator.findCycles(limit, maxHops, minProfit));
+    }
+
+    /**
+     * Builds a Path for each cycle, given as the currency indices along it without repeating the first at the end
+     */
+    private List<Path<String>> toCyclePaths(RateSnapshot rates, List<int[]> cycles) {
+        List<Path<String>> paths = new ArrayList<>();
+        for (int[] cycle : cycles) {
+            String start = rates.getCurrency(cycle[0]);
+            Path<String> path = new Path<>(start, rates.getRateToUSD(cycle[0]));
+            for (int i = 0; i < cycle.length; i++) {
+                int base = cycle[i];
+                int quote = cycle[(i + 1) % cycle.length];
+                path = path.extend(rates.getCurrency(quote), rates.getRate(base, quote), rates.getRateToUSD(quote));
+            }
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    /**
+     * Creates an IncrementalArbitrageDetector starting from the web's current rates, which can then be kept up to
+     * date one rate at a time
+     *
+     * @return a detector starting from the web's current rates
+     */
+    public IncrementalArbitrageDetector createIncrementalDetector() {
+        return new IncrementalArbitrageDetector(getRateSnapshot());
+    }
+
+    /**
+     * Finds arbitrage using Dijkstra's algorithm. Rates are read from the web's RateSnapshot, so no listener is called
+     * during the search. Each currency has at most one entry in the queue, whose priority is raised in place when a
+     * better path to it is found, and the Path is only built once dest is reached.
      *
      * @param start the starting currency
      * @param dest the ending currency
      * @return a Path with all the currencies in between
      * @throws IllegalArgumentException if start or dest are not currencies in the graph
      */
-    private Path<String> findPath(String start, String dest)
+    private Path<String> findPath(RateSnapshot rates, String start, String dest)
             throws IllegalArgumentException {
-        if (!graph.containsNode(start) || !graph.containsNode(dest)) {
+        int startIndex = rates.indexOf(start);
+        int destIndex = rates.indexOf(dest);
+        if (startIndex == -1 || destIndex == -1) {
             throw new IllegalArgumentException();
         }
-        Queue<Path<String>> active = new PriorityQueue<>(new PathComparator());
-        Set<String> finished = new HashSet<>();
-        Path<String> startPath = new Path<>(start, toUSDPriceListeners.get(start));
-        //although startPath should already represent a path from start to start,
-        //  an update to Path's Segments needs to be made
-        Path<String> startToStart = startPath.extend(start, new GetRateListener() {
-            @Override
-            public double getRate() {
-                return 1;
-            }
+        CsrGraph<String> rateGraph = rates.getRateGraph();
+        int size = rates.size();
+        Path<String> startPath = new Path<>(start, rates.getRateToUSD(startIndex));
+        if (startIndex == destIndex) {
+            //although startPath should already represent a path from start to start,
+            //  an update to Path's Segments needs to be made
+            return startPath.extend(start, 1, rates.getRateToUSD(startIndex));
+        }
 
-            @Override
-            public double getRateToUSD() {
-                return toUSDPriceListeners.get(start).getRateToUSD();
-            }
-        });
-        active.add(startToStart);
+        // the heap pops the lowest priority first, so currencies are queued by negative cost
+        IndexedDoubleHeap active = new IndexedDoubleHeap(size);
+        boolean[] finished = new boolean[size];
+        double[] pathRates = new double[size];
+        int[] parents = new int[size];
+        int[] parentEdges = new int[size];
+        pathRates[startIndex] = startPath.getRate();
+        active.offer(startIndex, -startPath.getCost());
         while (!active.isEmpty()) {
-            Path<String> minPath = active.remove();
-            String minDest = minPath.getEnd();
+            int minDest = active.remove();
 
-            if (minDest.equals(dest)) {
-                return minPath;
+            if (minDest == destIndex) {
+                return buildPath(rates, startPath, startIndex, parents, parentEdges, destIndex);
             }
 
-            if (finished.contains(minDest)) {
-                continue;
-            }
-
-            for (Graph<String, GetRateListener>.Edge edge : graph.getOutGoingEdges(minDest)) {
-                if (!finished.contains(edge.getChild())) {
-
-                    if (edge.getParent().equals(start)) {
-                        Path<String> newPath = startPath.extend(edge.getChild(), edge.getLabel());
-                        active.add(newPath);
-                    } else {
-                        Path<String> newPath = minPath.extend(edge.getChild(), edge.getLabel());
-                        active.add(newPath);
+            for (int edge = rateGraph.getOutGoingStart(minDest); edge < rateGraph.getOutGoingEnd(minDest); edge++) {
+                int child = rateGraph.getTarget(edge);
+                if (!finished[child]) {
+                    double rate = pathRates[minDest] * rateGraph.getWeight(edge);
+                    if (active.offer(child, -rate * rates.getRateToUSD(child))) {
+                        pathRates[child] = rate;
+                        parents[child] = minDest;
+                        parentEdges[child] = edge;
                     }
                 }
             }
-            finished.add(minDest);
+            finished[minDest] = true;
         }
         return null;
     }
 
+    /**
+     * Builds the Path from startPath to dest by following the parent of each currency back to the start
+     */
+    private Path<String> buildPath(RateSnapshot rates, Path<String> startPath, int startIndex, int[] parents,
+                                   int[] parentEdges, int dest) {
+        int length = 0;
+        int[] edges = new int[rates.size()];
+        for (int current = dest; current != startIndex; current = parents[current]) {
+            edges[length++] = parentEdges[current];
+        }
+
+        CsrGraph<String> rateGraph = rates.getRateGraph();
+        Path<String> path = startPath;
+        for (int i = length - 1; i >= 0; i--) {
+            int child = rateGraph.getTarget(edges[i]);
+            path = path.extend(rateGraph.getNode(child), rateGraph.getWeight(edges[i]), rates.getRateToUSD(child));
+        }
+        return path;
+    }
+
     // PathComparator is used to compare path costs
     private static class PathComparator implements Comparator<Path<?>> {
 
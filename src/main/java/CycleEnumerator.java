@@ -0,0 +1,273 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <b>CycleEnumerator</b> finds the most profitable cycles of at most a given number of exchanges in a RateSnapshot.
+ * Unlike ArbitrageDetector, which stops at the first cycles it finds, it ranks every cycle up to the hop limit and
+ * returns the best ones.
+ * <p>
+ * Cycles are enumerated by a depth-first search from each currency, visiting only currencies with higher indices, so
+ * each cycle is found once, from its lowest currency. Before searching from a currency, the best product of rates
+ * that can lead back to it within each number of hops is computed, and a branch is cut as soon as its product times
+ * that bound cannot beat the least profitable cycle that would still be kept. The searches from different currencies
+ * run as separate ForkJoin tasks that share that bar.
+ */
+public class CycleEnumerator {
+
+    /**
+     * Webs with fewer currencies than this are searched on the calling thread, where forking would cost more than it
+     * saves.
+     */
+    static final int PARALLEL_THRESHOLD = 16;
+
+    private final RateSnapshot rates;
+    private final int size;
+
+    /**
+     * neighbors[base] holds every quote currency base has a rate to.
+     */
+    private final int[][] neighbors;
+
+    /**
+     * neighborRates[base][i] is the rate from base to neighbors[base][i].
+     */
+    private final double[][] neighborRates;
+
+    /**
+     * Builds an enumerator over the rates in the given snapshot
+     *
+     * @param rates the rates to search
+     */
+    public CycleEnumerator(RateSnapshot rates) {
+        this.rates = rates;
+        this.size = rates.size();
+        this.neighbors = new int[size][];
+        this.neighborRates = new double[size][];
+        int[] quotes = new int[size];
+        for (int base = 0; base < size; base++) {
+            int degree = 0;
+            for (int quote = 0; quote < size; quote++) {
+                if (rates.hasRate(base, quote)) {
+                    quotes[degree++] = quote;
+                }
+            }
+            neighbors[base] = Arrays.copyOf(quotes, degree);
+            neighborRates[base] = new double[degree];
+            for (int i = 0; i < degree; i++) {
+                neighborRates[base][i] = rates.getRate(base, quotes[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the snapshot this searches
+     */
+    public RateSnapshot getRates() {
+        return rates;
+    }
+
+    /**
+     * Finds the most profitable cycles on the common ForkJoinPool
+     *
+     * @param limit the most cycles to return
+     * @param maxHops the most exchanges in a cycle
+     * @param minProfit the least profit a cycle must make, as a fraction of the starting amount
+     * @return at most limit cycles whose rates multiply to more than 1 + minProfit, most profitable first, each as the
+     * currency indices along the cycle without repeating the first at the end
+     * @throws IllegalArgumentException if {@code limit < 1 || maxHops < 2}
+     */
+    public List<int[]> findCycles(int limit, int maxHops, double minProfit) {
+        return findCycles(limit, maxHops, minProfit, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Finds the most profitable cycles
+     *
+     * @param limit the most cycles to return
+     * @param maxHops the most exchanges in a cycle
+     * @param minProfit the least profit a cycle must make, as a fraction of the starting amount
+     * @param pool the pool the search runs on
+     * @return at most limit cycles whose rates multiply to more than 1 + minProfit, most profitable first, each as the
+     * currency indices along the cycle without repeating the first at the end
+     * @throws IllegalArgumentException if {@code limit < 1 || maxHops < 2}
+     */
+    public List<int[]> findCycles(int limit, int maxHops, double minProfit, ForkJoinPool pool) {
+        if (limit < 1 || maxHops < 2) {
+            throw new IllegalArgumentException("limit must be positive and maxHops must be at least 2");
+        }
+        AtomicLong bar = new AtomicLong(Double.doubleToLongBits(1 + minProfit));
+        PriorityQueue<Cycle> best;
+        if (size < PARALLEL_THRESHOLD) {
+            best = new PriorityQueue<>();
+            for (int start = 0; start < size; start++) {
+                new Search(start, limit, maxHops, bar, best).run();
+            }
+        } else {
+            best = pool.invoke(new Enumeration(limit, maxHops, bar, 0, size));
+        }
+        List<Cycle> cycles = new ArrayList<>(best);
+        cycles.sort((cycle1, cycle2) -> Double.compare(cycle2.product, cycle1.product));
+        List<int[]> result = new ArrayList<>();
+        for (Cycle cycle : cycles) {
+            result.add(cycle.currencies);
+        }
+        return result;
+    }
+
+    /**
+     * The depth-first search for the cycles that start at one currency
+     */
+    private class Search {
+        private final int start;
+        private final int limit;
+        private final int maxHops;
+        private final AtomicLong bar;
+        private final PriorityQueue<Cycle> best;
+
+        /**
+         * returnBound[hops][currency] is the best product of rates from currency back to start in at most hops
+         * exchanges, through currencies above start, or 0 if start cannot be reached that way.
+         */
+        private final double[][] returnBound;
+
+        private final int[] path;
+        private final boolean[] onPath;
+
+        private Search(int start, int limit, int maxHops, AtomicLong bar, PriorityQueue<Cycle> best) {
+            this.start = start;
+            this.limit = limit;
+            this.maxHops = maxHops;
+            this.bar = bar;
+            this.best = best;
+            this.returnBound = new double[maxHops][size];
+            this.path = new int[maxHops];
+            this.onPath = new boolean[size];
+        }
+
+        private void run() {
+            returnBound[0][start] = 1;
+            for (int hops = 1; hops < maxHops; hops++) {
+                double[] fewer = returnBound[hops - 1];
+                double[] bound = returnBound[hops];
+                for (int currency = start; currency < size; currency++) {
+                    double product = fewer[currency];
+                    for (int i = 0; i < neighbors[currency].length; i++) {
+                        int next = neighbors[currency][i];
+                        if (next >= start) {
+                            product = Math.max(product, neighborRates[currency][i] * fewer[next]);
+                        }
+                    }
+                    bound[currency] = product;
+                }
+            }
+
+            path[0] = start;
+            onPath[start] = true;
+            extend(start, 1, 1);
+        }
+
+        /**
+         * Tries every exchange out of current, the last of length currencies on the path so far
+         *
+         * @param product the product of the rates along the path so far
+         */
+        private void extend(int current, int length, double product) {
+            for (int i = 0; i < neighbors[current].length; i++) {
+                int next = neighbors[current][i];
+                double nextProduct = product * neighborRates[current][i];
+                if (next == start) {
+                    if (length >= 2 && nextProduct > threshold()) {
+                        offer(Arrays.copyOf(path, length), nextProduct);
+                    }
+                } else if (next > start && !onPath[next] && length < maxHops
+                        && nextProduct * returnBound[maxHops - length][next] > threshold()) {
+                    path[length] = next;
+                    onPath[next] = true;
+                    extend(next, length + 1, nextProduct);
+                    onPath[next] = false;
+                }
+            }
+        }
+
+        private double threshold() {
+            return Double.longBitsToDouble(bar.get());
+        }
+
+        private void offer(int[] currencies, double product) {
+            best.offer(new Cycle(currencies, product));
+            if (best.size() > limit) {
+                best.poll();
+            }
+            if (best.size() == limit) {
+                // products are positive, so their bits order the same way they do
+                bar.accumulateAndGet(Double.doubleToLongBits(best.peek().product), Math::max);
+            }
+        }
+    }
+
+    /**
+     * Searches from the currencies start to end, splitting the range in half until one currency is left
+     */
+    private class Enumeration extends RecursiveTask<PriorityQueue<Cycle>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int limit;
+        private final int maxHops;
+        private final AtomicLong bar;
+        private final int start;
+        private final int end;
+
+        private Enumeration(int limit, int maxHops, AtomicLong bar, int start, int end) {
+            this.limit = limit;
+            this.maxHops = maxHops;
+            this.bar = bar;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected PriorityQueue<Cycle> compute() {
+            if (end - start <= 1) {
+                PriorityQueue<Cycle> best = new PriorityQueue<>();
+                if (end > start) {
+                    new Search(start, limit, maxHops, bar, best).run();
+                }
+                return best;
+            }
+            int middle = (start + end) >>> 1;
+            Enumeration left = new Enumeration(limit, maxHops, bar, start, middle);
+            left.fork();
+            PriorityQueue<Cycle> best = new Enumeration(limit, maxHops, bar, middle, end).compute();
+            for (Cycle cycle : left.join()) {
+                best.offer(cycle);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * A cycle and the product of its rates, ordered from least to most profitable
+     */
+    private static class Cycle implements Comparable<Cycle> {
+        private final int[] currencies;
+        private final double product;
+
+        private Cycle(int[] currencies, double product) {
+            this.currencies = currencies;
+            this.product = product;
+        }
+
+        @Override
+        public int compareTo(Cycle other) {
+            return Double.compare(product, other.product);
+        }
+    }
+}
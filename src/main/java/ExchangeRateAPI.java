@@ -1,46 +1,157 @@
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
 import java.net.HttpURLConnection;
+import java.net.URI;
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ExchangeRateAPI {
     private static final String API_KEY;
-    private static final String CONVERSION_RATE = "conversion_rate";
-    private static final String CONVERSION_RATES = "conversion_rates";
+    public static final String DEFAULT_API_URL = "https://v6.exchangerate-api.com/v6/";
     public static final String USD = "usd";
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 8;
+    public static final long DEFAULT_RATE_TTL_MILLIS = 60_000;
+    public static final int DEFAULT_RATE_CACHE_SIZE = 4096;
+    public static final long DEFAULT_MONTHLY_QUOTA = 1500;
+    public static final long DEFAULT_REQUESTS_PER_MINUTE = 60;
+
+    /**
+     * The most traded currencies, most traded first. These are loaded first when requests are limited.
+     */
+    public static final List<String> CURRENCY_IMPORTANCE = Collections.unmodifiableList(Arrays.asList(
+            "USD", "EUR", "JPY", "GBP", "CNY", "AUD", "CAD", "CHF", "HKD", "SGD", "SEK", "KRW", "NOK", "NZD",
+            "INR", "MXN", "TWD", "ZAR", "BRL", "DKK", "PLN", "THB", "ILS", "IDR", "CZK", "AED", "TRY", "HUF",
+            "CLP", "SAR", "PHP", "MYR", "COP", "RUB", "RON", "PEN", "BHD", "BGN", "ARS"));
+    private static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
+    private static volatile TtlCache<String, Double> rateCache =
+            new TtlCache<>(DEFAULT_RATE_TTL_MILLIS, DEFAULT_RATE_CACHE_SIZE);
+    private static volatile RequestBudget requestBudget =
+            new RequestBudget(DEFAULT_MONTHLY_QUOTA, DEFAULT_REQUESTS_PER_MINUTE);
+    // guarded by ExchangeRateAPI.class
     private static Set<String> availableCurrencies = null;
 
+    /**
+     * Every request goes to this URL followed by the endpoint, e.g. /latest/USD.
+     */
+    private static volatile String baseUrl;
+
     static {
         API_KEY = System.getenv("EXCHANGE_RATE_API_KEY");
+        String configuredUrl = System.getenv("EXCHANGE_RATE_API_BASE_URL");
+        configureBaseUrl(configuredUrl != null ? configuredUrl : DEFAULT_API_URL + API_KEY);
+    }
+
+    /**
+     * Sends every following request to the given URL instead of exchangerate-api.com, e.g. to a StandInRateServer.
+     * The URL is everything before the endpoint, so for exchangerate-api.com it is DEFAULT_API_URL followed by the
+     * API key. Also set by the EXCHANGE_RATE_API_BASE_URL environment variable.
+     *
+     * @param url the URL the endpoints are appended to
+     */
+    public static void configureBaseUrl(String url) {
+        baseUrl = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * @return the URL the endpoints of every request are appended to
+     */
+    public static String getBaseUrl() {
+        return baseUrl;
     }
 
     public static CurrencyWeb buildWeb(Collection<String> currencies) {
+        return buildWeb(currencies, false);
+    }
+
+    /**
+     * Builds a CurrencyWeb with an exchange rate between every pair of the given currencies
+     *
+     * @param currencies the currencies in the web
+     * @param bulk if true, one /latest/{base} document is loaded per currency up front and every rate is read from
+     *             it, instead of one /pair/{base}/{quote} request per getRate() call
+     * @return a CurrencyWeb connecting all the given currencies
+     * @throws IllegalArgumentException if a currency is not available from the API
+     */
+    public static CurrencyWeb buildWeb(Collection<String> currencies, boolean bulk) {
         for (String currency : currencies) {
             if (!getAvailableCurrencies().contains(currency)) {
                 throw new IllegalArgumentException("invalid currency: " + currency);
             }
         }
 
+        if (bulk) {
+            return buildBulkWeb(new ArrayList<>(currencies));
+        }
+
         CurrencyWeb currencyWeb = new CurrencyWeb();
 
-        for (String baseCurrency : currencies) {
-            for (String quoteCurrency : currencies) {
-                if (!baseCurrency.equals(quoteCurrency)) {
-                    currencyWeb.addExchangeRate(baseCurrency, quoteCurrency,
-                            getRateListenerFactory(baseCurrency, quoteCurrency),
-                            getRateListenerFactory(quoteCurrency, baseCurrency));
-                }
+        // each call connects both directions, so each pair is added once
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(currencies));
+        for (int i = 0; i < distinct.size(); i++) {
+            for (int j = i + 1; j < distinct.size(); j++) {
+                currencyWeb.addExchangeRate(distinct.get(i), distinct.get(j),
+                        getRateListenerFactory(distinct.get(i), distinct.get(j)),
+                        getRateListenerFactory(distinct.get(j), distinct.get(i)));
             }
         }
         return currencyWeb;
     }
 
+    private static CurrencyWeb buildBulkWeb(List<String> currencies) {
+        try {
+            return buildWeb(fetchSnapshotAsync(currencies).join());
+        } catch (CompletionException e) {
+            e.printStackTrace();
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Builds a CurrencyWeb with an exchange rate between every pair of currencies in the given snapshot, whose
+     * listeners read their rates from the snapshot
+     *
+     * @param rates the rates of the web
+     * @return a CurrencyWeb connecting all the currencies in rates
+     */
+    public static CurrencyWeb buildWeb(RateSnapshot rates) {
+        CurrencyWeb currencyWeb = new CurrencyWeb();
+
+        // each call connects both directions, so each pair is added once
+        for (int i = 0; i < rates.size(); i++) {
+            for (int j = i + 1; j < rates.size(); j++) {
+                currencyWeb.addExchangeRate(rates.getCurrency(i), rates.getCurrency(j),
+                        getRateListenerFactory(rates, i, j),
+                        getRateListenerFactory(rates, j, i));
+            }
+        }
+        return currencyWeb;
+    }
+
+    private static GetRateListener getRateListenerFactory(RateSnapshot rates, int base, int quote) {
+        return new GetRateListener() {
+            @Override
+            public double getRate() {
+                return rates.getRate(base, quote);
+            }
+
+            @Override
+            public double getRateToUSD() {
+                return rates.getRateToUSD(quote);
+            }
+        };
+    }
+
     private static GetRateListener getRateListenerFactory(String baseCurrency, String quoteCurrency) {
         return new GetRateListener() {
             @Override
@@ -55,25 +166,39 @@ public class ExchangeRateAPI {
         };
     }
 
-    private static JsonObject getJsonResponse(String path) throws IOException{
+    private static Reader getResponse(String path) throws IOException{
+        try {
+            requestBudget.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the request budget");
+        }
+        return readResponse(path);
+    }
+
+    private static Reader readResponse(String path) throws IOException{
         URL url = new URL(path);
         HttpURLConnection request = (HttpURLConnection) url.openConnection();
         request.connect();
-        JsonElement root = JsonParser.parseReader(new InputStreamReader((InputStream) request.getContent()));
-        return root.getAsJsonObject();
+        return new InputStreamReader((InputStream) request.getContent(), StandardCharsets.UTF_8);
     }
 
     public static Set<String> getAvailableCurrencies() {
         return getAvailableCurrencies(false);
     }
 
-    public static Set<String> getAvailableCurrencies(boolean refresh) {
+    /**
+     * Returns the currencies the API has rates for, which are fetched once and then shared by every caller
+     *
+     * @param refresh if true, the currencies are fetched again even if they were fetched before
+     * @return an unmodifiable set of the currencies the API has rates for, or an empty set if they cannot be fetched
+     */
+    public static synchronized Set<String> getAvailableCurrencies(boolean refresh) {
         try {
             if (refresh || availableCurrencies == null) {
-                JsonObject responseJson = getJsonResponse(
-                        "https://v6.exchangerate-api.com/v6/" + API_KEY + "/latest/usd");
-                JsonObject ratesJson = responseJson.getAsJsonObject(CONVERSION_RATES);
-                availableCurrencies = ratesJson.keySet();
+                try (Reader response = getResponse(baseUrl + "/latest/" + USD)) {
+                    availableCurrencies = Collections.unmodifiableSet(RateResponseParser.readCurrencyCodes(response));
+                }
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -82,11 +207,22 @@ public class ExchangeRateAPI {
         return availableCurrencies;
     }
 
+    /**
+     * Returns the rate BASE/QUOTE. Rates are cached for the cache's TTL, and concurrent requests for the same rate
+     * share one API call.
+     *
+     * @param baseCurrency the base currency
+     * @param quoteCurrency the quote currency
+     * @return the rate BASE/QUOTE
+     */
     public static double getExchangeRate(String baseCurrency, String quoteCurrency) {
         try {
-            JsonObject responseJson = getJsonResponse(
-                    String.format("https://v6.exchangerate-api.com/v6/%s/pair/%s/%s", API_KEY, baseCurrency, quoteCurrency));
-            return responseJson.get(CONVERSION_RATE).getAsDouble();
+            return rateCache.get(baseCurrency + "/" + quoteCurrency, () -> {
+                try (Reader response = getResponse(
+                        String.format("%s/pair/%s/%s", baseUrl, baseCurrency, quoteCurrency))) {
+                    return RateResponseParser.readConversionRate(response);
+                }
+            });
         } catch (Exception e) {
             e.printStackTrace();
             System.exit(1);
@@ -94,4 +230,186 @@ public class ExchangeRateAPI {
         }
     }
 
+    /**
+     * Replaces the cache in front of getExchangeRate with an empty one
+     *
+     * @param ttlMillis how long a rate is reused after it is fetched, in milliseconds
+     * @param maxSize the most rates kept at once
+     * @throws IllegalArgumentException if {@code ttlMillis < 0 || maxSize < 1}
+     */
+    public static void configureRateCache(long ttlMillis, int maxSize) {
+        rateCache = new TtlCache<>(ttlMillis, maxSize);
+    }
+
+    /**
+     * Returns the cache in front of getExchangeRate, whose counters show how many lookups it answered
+     *
+     * @return the cache in front of getExchangeRate
+     */
+    public static TtlCache<String, Double> getRateCache() {
+        return rateCache;
+    }
+
+    /**
+     * Replaces the budget that requests to the API are counted against with a new one with its whole quota left
+     *
+     * @param monthlyQuota the most requests allowed per calendar month
+     * @param requestsPerMinute the most requests allowed per minute
+     * @throws IllegalArgumentException if monthlyQuota or requestsPerMinute is not positive
+     */
+    public static void configureRequestBudget(long monthlyQuota, long requestsPerMinute) {
+        requestBudget = new RequestBudget(monthlyQuota, requestsPerMinute);
+    }
+
+    /**
+     * Returns the budget that requests to the API are counted against, which shows how many requests are left
+     *
+     * @return the budget that requests to the API are counted against
+     */
+    public static RequestBudget getRequestBudget() {
+        return requestBudget;
+    }
+
+    /**
+     * Sets the requests left in the budget to the count the API reports for the key, which includes requests made by
+     * other clients. The /quota endpoint does not count against the quota.
+     */
+    public static void syncRequestBudget() {
+        try (Reader response = readResponse(baseUrl + "/quota")) {
+            requestBudget.setRemainingMonthlyRequests(RateResponseParser.readRequestsRemaining(response));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Orders the given currencies by how widely they are traded: currencies in CURRENCY_IMPORTANCE come first in that
+     * order, followed by the rest in alphabetical order
+     *
+     * @param currencies the currencies to order
+     * @return a new list of the given currencies, most important first
+     */
+    public static List<String> rankByImportance(Collection<String> currencies) {
+        List<String> ranked = new ArrayList<>(currencies);
+        ranked.sort(Comparator.comparingInt(ExchangeRateAPI::importance).thenComparing(Comparator.naturalOrder()));
+        return ranked;
+    }
+
+    /**
+     * Returns the most important currencies that can be bulk loaded the given number of times with the requests left
+     * in the budget
+     *
+     * @param currencies the currencies to choose from
+     * @param refreshes how many times the web will be loaded
+     * @return the largest affordable list of currencies, most important first
+     * @throws IllegalArgumentException if {@code refreshes < 1}
+     */
+    public static List<String> selectAffordableCurrencies(Collection<String> currencies, int refreshes) {
+        if (refreshes < 1) {
+            throw new IllegalArgumentException("refreshes must be positive");
+        }
+        List<String> ranked = rankByImportance(currencies);
+        long affordable = requestBudget.getRemainingMonthlyRequests() / refreshes;
+        return ranked.subList(0, (int) Math.min(ranked.size(), affordable));
+    }
+
+    private static int importance(String currency) {
+        int rank = CURRENCY_IMPORTANCE.indexOf(currency.toUpperCase());
+        return rank == -1 ? CURRENCY_IMPORTANCE.size() : rank;
+    }
+
+    /**
+     * Fetches the rates between the given currencies with up to DEFAULT_MAX_CONCURRENT_REQUESTS requests in flight
+     *
+     * @see #fetchSnapshotAsync(List, int)
+     */
+    public static CompletableFuture<RateSnapshot> fetchSnapshotAsync(List<String> currencies) {
+        return fetchSnapshotAsync(currencies, DEFAULT_MAX_CONCURRENT_REQUESTS);
+    }
+
+    /**
+     * Fetches the rates between the given currencies without blocking. One /latest/{base} document is requested per
+     * currency, with up to maxConcurrentRequests requests in flight at once, so the wall time is about that of the
+     * slowest requests rather than the sum of all of them. Requests are counted against the request budget, and the
+     * most important currencies are requested first.
+     *
+     * @param currencies the currencies to fetch the rates between
+     * @param maxConcurrentRequests the most requests that may be in flight at once
+     * @return a future completed with a snapshot of the rates between currencies, or completed exceptionally if any
+     * request fails
+     * @throws IllegalArgumentException if {@code maxConcurrentRequests < 1}
+     */
+    public static CompletableFuture<RateSnapshot> fetchSnapshotAsync(List<String> currencies,
+                                                                   int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be positive");
+        }
+        List<String> bases = new ArrayList<>(new LinkedHashSet<>(currencies));
+        double[][] rates = new double[bases.size()][];
+        double[] ratesToUSD = new double[bases.size()];
+        // rows are parsed straight into arrays indexed by id, so the id of each base is its column, and USD's rate
+        // lands in the column after the last base unless USD is a base itself
+        CurrencyRegistry ids = new CurrencyRegistry();
+        for (String base : bases) {
+            ids.intern(base);
+        }
+        int usd = ids.intern(USD.toUpperCase());
+
+        int[] rowOrder = new int[bases.size()];
+        List<String> ranked = rankByImportance(bases);
+        for (int i = 0; i < rowOrder.length; i++) {
+            rowOrder[i] = bases.indexOf(ranked.get(i));
+        }
+
+        // each worker fetches one row at a time, taking the next unfetched row when its request completes
+        AtomicInteger nextRow = new AtomicInteger();
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(maxConcurrentRequests, bases.size())];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = fetchRowsAsync(bases, ids, usd, rowOrder, nextRow, rates, ratesToUSD);
+        }
+        return CompletableFuture.allOf(workers).thenApply(done -> RateSnapshot.of(bases, rates, ratesToUSD));
+    }
+
+    private static CompletableFuture<Void> fetchRowsAsync(List<String> currencies, CurrencyRegistry ids, int usd,
+                                                          int[] rowOrder, AtomicInteger nextRow, double[][] rates,
+                                                          double[] ratesToUSD) {
+        int next = nextRow.getAndIncrement();
+        if (next >= rowOrder.length) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int row = rowOrder[next];
+        return getResponseAsync(baseUrl + "/latest/" + currencies.get(row))
+                .thenCompose(response -> {
+                    double[] parsed = new double[ids.size()];
+                    Arrays.fill(parsed, Double.NaN);
+                    try (Reader in = response) {
+                        RateResponseParser.readConversionRates(in, ids, parsed);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                    for (int id = 0; id < parsed.length; id++) {
+                        if (Double.isNaN(parsed[id])) {
+                            throw new IllegalStateException("no conversion rate for " + ids.getCode(id));
+                        }
+                    }
+                    ratesToUSD[row] = parsed[usd];
+                    rates[row] = parsed.length == currencies.size() ? parsed
+                            : Arrays.copyOf(parsed, currencies.size());
+                    return fetchRowsAsync(currencies, ids, usd, rowOrder, nextRow, rates, ratesToUSD);
+                });
+    }
+
+    private static CompletableFuture<Reader> getResponseAsync(String path) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(path)).GET().build();
+        return requestBudget.acquireAsync()
+                .thenCompose(acquired -> HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()))
+                .thenApply(response -> {
+                    if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                        throw new CompletionException(
+                                new IOException("HTTP " + response.statusCode() + " from " + path));
+                    }
+                    return new InputStreamReader(response.body(), StandardCharsets.UTF_8);
+                });
+    }
+
 }
@@ -1,7 +1,11 @@
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
 
 /**
  * <b>Graph</b> represents a <b>mutable</b> set of <b>nodes</b> and the <b>edges</b> between them. Graph is
@@ -101,6 +105,67 @@ public class Graph<N, L> {
         return new HashSet<>(nodes.keySet());
     }
 
+    /**
+     * Returns an immutable CsrGraph of the nodes and edges currently in this. Each edge is weighted by applying
+     * weigher to its label once; later changes to this are not reflected in the returned graph.
+     *
+     * @param weigher computes the weight of an edge from its label
+     * @spec.requires {@code weigher != null}
+     * @return a CsrGraph of the nodes and edges in this
+     */
+    public CsrGraph<N> freeze(ToDoubleFunction<? super L> weigher) {
+        Map<N, Integer> idOf = new HashMap<>();
+        for (N node : nodes.keySet()) {
+            idOf.put(node, idOf.size());
+        }
+        return freeze(idOf::get, idOf.size(), weigher);
+    }
+
+    /**
+     * Returns an immutable CsrGraph of the nodes and edges currently in this, numbering the nodes with the given ids
+     * instead of choosing ids itself. Ids no node of this is given have no node and no edges in the returned graph.
+     *
+     * @param idOf the id of each node
+     * @param size the number of ids
+     * @param weigher computes the weight of an edge from its label
+     * @spec.requires {@code idOf != null && weigher != null} and idOf gives distinct nodes of this distinct ids
+     *                between 0 and size - 1
+     * @return a CsrGraph of the nodes and edges in this
+     */
+    public CsrGraph<N> freeze(ToIntFunction<? super N> idOf, int size, ToDoubleFunction<? super L> weigher) {
+        List<N> ids = new ArrayList<>(size);
+        List<Set<Edge>> outGoing = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(null);
+            outGoing.add(null);
+        }
+        int edgeCount = 0;
+        for (Map.Entry<N, Set<Edge>> node : nodes.entrySet()) {
+            int id = idOf.applyAsInt(node.getKey());
+            ids.set(id, node.getKey());
+            outGoing.set(id, node.getValue());
+            edgeCount += node.getValue().size();
+        }
+
+        int[] offsets = new int[size + 1];
+        int[] targets = new int[edgeCount];
+        double[] weights = new double[edgeCount];
+        int edge = 0;
+        for (int i = 0; i < size; i++) {
+            offsets[i] = edge;
+            if (outGoing.get(i) == null) {
+                continue;
+            }
+            for (Edge edgeOut : outGoing.get(i)) {
+                targets[edge] = idOf.applyAsInt(edgeOut.getChild());
+                weights[edge] = weigher.applyAsDouble(edgeOut.getLabel());
+                edge++;
+            }
+        }
+        offsets[size] = edge;
+        return new CsrGraph<>(ids, offsets, targets, weights);
+    }
+
     /**
      * <b>Edge</b> represents an <b>immutable</b> edge from a parent to a child, with a label as the name of the edge
      */
@@ -0,0 +1,431 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <b>IncrementalArbitrageDetector</b> is a <b>mutable</b> arbitrage detector that is updated one rate at a time.
+ * Like ArbitrageDetector, each rate BASE/QUOTE is an edge weighted by -log(rate), and arbitrage is a negative cycle.
+ * <p>
+ * The detector keeps a potential for every currency such that {@code potential[base] + weight >= potential[quote]}
+ * for every edge it has admitted, which proves the admitted edges contain no negative cycle. When a rate goes up, only
+ * the currencies whose potential has to drop because of that edge are relaxed, starting from its quote currency, so
+ * the work done is proportional to the region the change affects rather than to the whole web. If the relaxation comes
+ * back around to the base currency, the edge closes a negative cycle: the relaxation is undone, the edge is held out
+ * as pending, and the cycle is reported. When a rate goes down, the pending edges whose cycles use that rate are
+ * retried, since their cycles may have stopped being profitable.
+ * <p>
+ * An opportunity that needs two pending edges at once is not reported until one of them is admitted again.
+ */
+public class IncrementalArbitrageDetector {
+
+    /**
+     * Improvements smaller than this (in log space) are ignored, so rounding error is never reported as arbitrage.
+     */
+    private static final double EPSILON = 1e-12;
+
+    /**
+     * The index of each currency: its index in the starting snapshot, or the next free index for a currency added
+     * later by addRate.
+     */
+    private final Map<String, Integer> indices;
+
+    /**
+     * codes.get(index) is the currency at index, or null if the starting snapshot had no currency there.
+     */
+    private final List<String> codes;
+    private int size;
+
+    /**
+     * ratesToUSD[index] is the rate CURRENCY/USD of the currency at index, only used to build Paths.
+     */
+    private double[] ratesToUSD;
+
+    /**
+     * neighbors[base] holds every quote currency base has a rate to.
+     */
+    private int[][] neighbors;
+
+    /**
+     * rates[base][quote] is the latest rate BASE/QUOTE, or 0 if there is no rate from base to quote.
+     */
+    private double[][] rates;
+
+    /**
+     * weights[base][quote] is -log(rates[base][quote]).
+     */
+    private double[][] weights;
+
+    /**
+     * pending[base][quote] is true iff the edge from base to quote is held out because it closes a negative cycle.
+     */
+    private boolean[][] pending;
+
+    /**
+     * The profitable cycle closed by each pending edge, keyed by edgeKey(base, quote).
+     */
+    private final Map<Long, int[]> opportunities;
+
+    private double[] potentials;
+    private int[] parents;
+
+    // scratch space for a single relaxation, kept between updates so relaxing does not allocate
+    private int[] queue;
+    private boolean[] queued;
+    private int[] touched;
+    private int[] touchedAt;
+    private double[] savedPotentials;
+    private int[] savedParents;
+    private int relaxation;
+
+    /**
+     * Builds a detector starting from the rates in the given snapshot, and finds the opportunities in it
+     *
+     * @param rates the starting rates
+     */
+    public IncrementalArbitrageDetector(RateSnapshot rates) {
+        this.indices = new HashMap<>();
+        this.codes = new ArrayList<>();
+        this.opportunities = new LinkedHashMap<>();
+        this.size = rates.size();
+        allocate(size);
+
+        for (int base = 0; base < size; base++) {
+            String code = rates.getCurrency(base);
+            codes.add(code);
+            if (code != null) {
+                indices.put(code, base);
+            }
+            int degree = 0;
+            for (int quote = 0; quote < size; quote++) {
+                if (rates.hasRate(base, quote)) {
+                    degree++;
+                }
+            }
+            neighbors[base] = new int[degree];
+            int i = 0;
+            for (int quote = 0; quote < size; quote++) {
+                if (rates.hasRate(base, quote)) {
+                    neighbors[base][i++] = quote;
+                    this.rates[base][quote] = rates.getRate(base, quote);
+                    weights[base][quote] = -Math.log(rates.getRate(base, quote));
+                }
+            }
+            // rates are close to the ratio of the currencies' USD rates, so log(CURRENCY/USD) is already a nearly
+            // feasible potential and only the edges that disagree with it need relaxing below
+            double rateToUSD = rates.getRateToUSD(base);
+            ratesToUSD[base] = rateToUSD;
+            potentials[base] = rateToUSD > 0 && Double.isFinite(rateToUSD) ? Math.log(rateToUSD) : 0;
+        }
+
+        for (int base = 0; base < size; base++) {
+            for (int quote : neighbors[base]) {
+                if (potentials[base] + weights[base][quote] < potentials[quote] - EPSILON) {
+                    pending[base][quote] = true;
+                }
+            }
+        }
+        for (int base = 0; base < size; base++) {
+            for (int quote : neighbors[base]) {
+                if (pending[base][quote]) {
+                    admit(base, quote);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the rate BASE/QUOTE and returns the opportunities the change creates
+     *
+     * @param base the base currency
+     * @param quote the quote currency
+     * @param rate the new rate BASE/QUOTE
+     * @spec.modifies this
+     * @return the profitable cycles through the changed edge, or through pending edges the change let back in
+     * @throws IllegalArgumentException if there is no rate from base to quote or rate is not positive
+     */
+    public List<Path<String>> updateRate(String base, String quote, double rate) {
+        Integer baseIndex = indices.get(base);
+        Integer quoteIndex = indices.get(quote);
+        if (baseIndex == null || quoteIndex == null || rates[baseIndex][quoteIndex] == 0) {
+            throw new IllegalArgumentException("no exchange rate from " + base + " to " + quote);
+        }
+        checkRate(rate);
+        return toPaths(setRate(baseIndex, quoteIndex, rate));
+    }
+
+    /**
+     * Sets the rate BASE/QUOTE like updateRate, first adding either currency and the exchange rate between them if
+     * the detector does not have them yet. A new exchange rate is admitted like a rate that went up, so only the
+     * currencies it affects are relaxed.
+     *
+     * @param base the base currency
+     * @param quote the quote currency
+     * @param rate the rate BASE/QUOTE
+     * @spec.modifies this
+     * @return the profitable cycles through the new or changed edge, or through pending edges the change let back in
+     * @throws IllegalArgumentException if base and quote are the same currency or rate is not positive
+     */
+    public List<Path<String>> addRate(String base, String quote, double rate) {
+        if (base.equals(quote)) {
+            throw new IllegalArgumentException("no exchange rate from a currency to itself: " + base);
+        }
+        checkRate(rate);
+        Integer baseIndex = indices.get(base);
+        Integer quoteIndex = indices.get(quote);
+        if (baseIndex != null && quoteIndex != null && rates[baseIndex][quoteIndex] > 0) {
+            return toPaths(setRate(baseIndex, quoteIndex, rate));
+        }
+
+        double weight = -Math.log(rate);
+        // a new currency gets the potential that makes the new edge tight, which is as close to log(CURRENCY/USD)
+        // as the one rate known for it allows
+        if (baseIndex == null) {
+            baseIndex = addCurrency(base, quoteIndex == null ? 0 : potentials[quoteIndex] - weight);
+        }
+        if (quoteIndex == null) {
+            quoteIndex = addCurrency(quote, potentials[baseIndex] + weight);
+        }
+        int[] quotes = Arrays.copyOf(neighbors[baseIndex], neighbors[baseIndex].length + 1);
+        quotes[quotes.length - 1] = quoteIndex;
+        neighbors[baseIndex] = quotes;
+        rates[baseIndex][quoteIndex] = rate;
+        weights[baseIndex][quoteIndex] = weight;
+        pending[baseIndex][quoteIndex] = true;
+        List<int[]> found = new ArrayList<>();
+        int[] cycle = admit(baseIndex, quoteIndex);
+        if (cycle != null) {
+            found.add(cycle);
+        }
+        return toPaths(found);
+    }
+
+    private static void checkRate(double rate) {
+        if (!(rate > 0) || Double.isInfinite(rate)) {
+            throw new IllegalArgumentException("rate must be positive: " + rate);
+        }
+    }
+
+    /**
+     * Sets the rate of the existing edge from base to quote and returns the cycles the change creates
+     */
+    private List<int[]> setRate(int baseIndex, int quoteIndex, double rate) {
+        double oldWeight = weights[baseIndex][quoteIndex];
+        rates[baseIndex][quoteIndex] = rate;
+        weights[baseIndex][quoteIndex] = -Math.log(rate);
+
+        List<int[]> found = new ArrayList<>();
+        if (weights[baseIndex][quoteIndex] > oldWeight) {
+            // a worse rate cannot create a cycle, but may break the cycles of pending edges that go through it
+            for (Map.Entry<Long, int[]> opportunity : new ArrayList<>(opportunities.entrySet())) {
+                if (contains(opportunity.getValue(), baseIndex, quoteIndex)) {
+                    long edge = opportunity.getKey();
+                    int[] cycle = admit((int) (edge >>> 32), (int) edge);
+                    if (cycle != null) {
+                        found.add(cycle);
+                    }
+                }
+            }
+        } else {
+            // take the edge out and let it back in under its new weight
+            pending[baseIndex][quoteIndex] = true;
+            int[] cycle = admit(baseIndex, quoteIndex);
+            if (cycle != null) {
+                found.add(cycle);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Gives the new currency code the next index, with no rates and the given potential
+     *
+     * @return the index of code
+     */
+    private int addCurrency(String code, double potential) {
+        int index = size;
+        if (index == potentials.length) {
+            allocate(Math.max(8, 2 * index));
+        }
+        size++;
+        codes.add(code);
+        indices.put(code, index);
+        neighbors[index] = new int[0];
+        potentials[index] = potential;
+        ratesToUSD[index] = Math.exp(potential);
+        return index;
+    }
+
+    /**
+     * Makes room for capacity currencies, keeping the state of the first size
+     */
+    private void allocate(int capacity) {
+        neighbors = neighbors == null ? new int[capacity][] : Arrays.copyOf(neighbors, capacity);
+        rates = grow(rates, capacity);
+        weights = grow(weights, capacity);
+        boolean[][] grownPending = new boolean[capacity][capacity];
+        for (int base = 0; pending != null && base < size; base++) {
+            System.arraycopy(pending[base], 0, grownPending[base], 0, size);
+        }
+        pending = grownPending;
+        ratesToUSD = ratesToUSD == null ? new double[capacity] : Arrays.copyOf(ratesToUSD, capacity);
+        potentials = potentials == null ? new double[capacity] : Arrays.copyOf(potentials, capacity);
+        parents = parents == null ? new int[capacity] : Arrays.copyOf(parents, capacity);
+        touchedAt = touchedAt == null ? new int[capacity] : Arrays.copyOf(touchedAt, capacity);
+        // the rest is scratch space that is empty between relaxations
+        queue = new int[capacity];
+        queued = new boolean[capacity];
+        touched = new int[capacity];
+        savedPotentials = new double[capacity];
+        savedParents = new int[capacity];
+    }
+
+    private double[][] grow(double[][] matrix, int capacity) {
+        double[][] grown = new double[capacity][capacity];
+        for (int base = 0; matrix != null && base < size; base++) {
+            System.arraycopy(matrix[base], 0, grown[base], 0, size);
+        }
+        return grown;
+    }
+
+    private static long edgeKey(int base, int quote) {
+        return (long) base << 32 | quote;
+    }
+
+    /**
+     * @return every profitable cycle known to the detector, one for each pending edge
+     */
+    public List<Path<String>> getOpportunities() {
+        return toPaths(new ArrayList<>(opportunities.values()));
+    }
+
+    /**
+     * Tries to admit the pending edge from base to quote by relaxing the potentials it violates
+     *
+     * @return null if the edge was admitted, or the profitable cycle it closes if it stays pending
+     */
+    private int[] admit(int base, int quote) {
+        double potential = potentials[base] + weights[base][quote];
+        if (potential >= potentials[quote] - EPSILON) {
+            pending[base][quote] = false;
+            opportunities.remove(edgeKey(base, quote));
+            return null;
+        }
+
+        relaxation++;
+        int touchedCount = 0;
+        int head = 0;
+        int count = 0;
+
+        touchedAt[quote] = relaxation;
+        savedPotentials[quote] = potentials[quote];
+        savedParents[quote] = parents[quote];
+        touched[touchedCount++] = quote;
+        potentials[quote] = potential;
+        parents[quote] = base;
+        queue[0] = quote;
+        queued[quote] = true;
+        count++;
+
+        int[] cycle = null;
+        while (count > 0 && cycle == null) {
+            int current = queue[head];
+            head = (head + 1) % size;
+            count--;
+            queued[current] = false;
+
+            for (int next : neighbors[current]) {
+                if (pending[current][next]) {
+                    continue;
+                }
+                double nextPotential = potentials[current] + weights[current][next];
+                if (nextPotential < potentials[next] - EPSILON) {
+                    if (next == base) {
+                        cycle = extractCycle(base, quote, current);
+                        break;
+                    }
+                    if (touchedAt[next] != relaxation) {
+                        touchedAt[next] = relaxation;
+                        savedPotentials[next] = potentials[next];
+                        savedParents[next] = parents[next];
+                        touched[touchedCount++] = next;
+                    }
+                    potentials[next] = nextPotential;
+                    parents[next] = current;
+                    if (!queued[next]) {
+                        queue[(head + count) % size] = next;
+                        queued[next] = true;
+                        count++;
+                    }
+                }
+            }
+        }
+
+        if (cycle == null) {
+            pending[base][quote] = false;
+            opportunities.remove(edgeKey(base, quote));
+            return null;
+        }
+
+        // the edge closes a negative cycle, so no potentials can satisfy it: undo the relaxation and hold it out
+        for (int i = 0; i < touchedCount; i++) {
+            int node = touched[i];
+            potentials[node] = savedPotentials[node];
+            parents[node] = savedParents[node];
+        }
+        while (count > 0) {
+            queued[queue[head]] = false;
+            head = (head + 1) % size;
+            count--;
+        }
+        pending[base][quote] = true;
+        opportunities.put(edgeKey(base, quote), cycle);
+        return cycle;
+    }
+
+    /**
+     * Returns the cycle base -> quote -> ... -> last -> base, following parents from last back to quote
+     */
+    private int[] extractCycle(int base, int quote, int last) {
+        int length = 2;
+        for (int current = last; current != quote; current = parents[current]) {
+            length++;
+        }
+        int[] cycle = new int[length];
+        cycle[0] = base;
+        int current = last;
+        for (int i = length - 1; i >= 1; i--) {
+            cycle[i] = current;
+            current = parents[current];
+        }
+        return cycle;
+    }
+
+    /**
+     * Returns true iff the given cycle uses the edge from base to quote
+     */
+    private boolean contains(int[] cycle, int base, int quote) {
+        for (int i = 0; i < cycle.length; i++) {
+            if (cycle[i] == base && cycle[(i + 1) % cycle.length] == quote) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Path<String>> toPaths(List<int[]> cycles) {
+        List<Path<String>> paths = new ArrayList<>();
+        for (int[] cycle : cycles) {
+            Path<String> path = new Path<>(codes.get(cycle[0]), ratesToUSD[cycle[0]]);
+            for (int i = 0; i < cycle.length; i++) {
+                int base = cycle[i];
+                int quote = cycle[(i + 1) % cycle.length];
+                path = path.extend(codes.get(quote), rates[base][quote], ratesToUSD[quote]);
+            }
+            paths.add(path);
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,179 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * <b>IndexedDoubleHeap</b> is a <b>mutable</b> binary min-heap of int ids from 0 to capacity - 1, each with a double
+ * priority. Each id is in the heap at most once and its priority can be lowered in place, so a graph search can keep
+ * one entry per node instead of one entry per relaxed edge. All storage is allocated up front in primitive arrays, so
+ * no operation allocates.
+ */
+public class IndexedDoubleHeap {
+
+    /**
+     * heap[i] is the id at position i of the binary heap; only the first size positions are used.
+     */
+    private final int[] heap;
+
+    /**
+     * positions[id] is the position of id in heap, or -1 if id is not in the heap.
+     */
+    private final int[] positions;
+
+    /**
+     * priorities[id] is the priority of id while it is in the heap.
+     */
+    private final double[] priorities;
+
+    private int size;
+
+    /**
+     * Constructs an empty heap that can hold the ids 0 to capacity - 1
+     *
+     * @param capacity one more than the largest id the heap can hold
+     * @spec.requires {@code capacity >= 0}
+     */
+    public IndexedDoubleHeap(int capacity) {
+        heap = new int[capacity];
+        positions = new int[capacity];
+        priorities = new double[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * @return true iff there are no ids in this
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of ids in this
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param id an id between 0 and capacity - 1
+     * @return true iff id is in this
+     */
+    public boolean contains(int id) {
+        return positions[id] != -1;
+    }
+
+    /**
+     * @param id an id in this
+     * @return the priority of id
+     * @throws NoSuchElementException if id is not in this
+     */
+    public double getPriority(int id) {
+        if (!contains(id)) {
+            throw new NoSuchElementException("id " + id + " is not in the heap");
+        }
+        return priorities[id];
+    }
+
+    /**
+     * Adds id with the given priority if it is not in this, or lowers its priority if the given priority is lower
+     * than its current one
+     *
+     * @param id an id between 0 and capacity - 1
+     * @param priority the new priority of id
+     * @spec.modifies this
+     * @return true iff id was added or its priority was lowered
+     */
+    public boolean offer(int id, double priority) {
+        if (!contains(id)) {
+            positions[id] = size;
+            heap[size] = id;
+            size++;
+        } else if (priority >= priorities[id]) {
+            return false;
+        }
+        priorities[id] = priority;
+        siftUp(positions[id]);
+        return true;
+    }
+
+    /**
+     * @return the id with the lowest priority in this
+     * @throws NoSuchElementException if this is empty
+     */
+    public int peek() {
+        if (size == 0) {
+            throw new NoSuchElementException("heap is empty");
+        }
+        return heap[0];
+    }
+
+    /**
+     * Removes the id with the lowest priority from this
+     *
+     * @spec.modifies this
+     * @return the removed id
+     * @throws NoSuchElementException if this is empty
+     */
+    public int remove() {
+        int id = peek();
+        size--;
+        positions[id] = -1;
+        if (size > 0) {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return id;
+    }
+
+    /**
+     * Removes every id from this
+     *
+     * @spec.modifies this
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int position) {
+        int id = heap[position];
+        double priority = priorities[id];
+        while (position > 0) {
+            int parentPosition = (position - 1) >>> 1;
+            int parent = heap[parentPosition];
+            if (priorities[parent] <= priority) {
+                break;
+            }
+            heap[position] = parent;
+            positions[parent] = position;
+            position = parentPosition;
+        }
+        heap[position] = id;
+        positions[id] = position;
+    }
+
+    private void siftDown(int position) {
+        int id = heap[position];
+        double priority = priorities[id];
+        while (true) {
+            int childPosition = 2 * position + 1;
+            if (childPosition >= size) {
+                break;
+            }
+            if (childPosition + 1 < size && priorities[heap[childPosition + 1]] < priorities[heap[childPosition]]) {
+                childPosition++;
+            }
+            int child = heap[childPosition];
+            if (priorities[child] >= priority) {
+                break;
+            }
+            heap[position] = child;
+            positions[child] = position;
+            position = childPosition;
+        }
+        heap[position] = id;
+        positions[id] = position;
+    }
+}
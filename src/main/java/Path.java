@@ -1,8 +1,5 @@
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
-
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -10,6 +7,10 @@ import java.util.List;
  * This represents an immutable path between two objects of type E, particularly
  * Path#getStart() and Path#getEnd(). Also contains a cached
  * version of the total rate along this path, for efficient repeated access.
+ * <p>
+ * A path is stored as the path it was extended from plus its last segment, so extending a path
+ * takes constant time and shares every earlier segment with the path it came from. The ordered
+ * list of segments is only built when the path is iterated, compared or printed.
  */
 public class Path<E> implements Iterable<Path<E>.Segment> {
 
@@ -30,11 +31,29 @@ public class Path<E> implements Iterable<Path<E>.Segment> {
     private E start;
 
     /**
-     * The ordered sequence of segments representing a path between E's.
+     * The path this path was extended from, or null if this path contains no segments.
+     */
+    private final Path<E> parent;
+
+    /**
+     * The last segment of this path, or null if this path contains no segments.
+     */
+    private final Segment last;
+
+    /**
+     * The number of segments in this path.
+     */
+    private final int length;
+
+    /**
+     * The ordered sequence of segments representing a path between E's, or null until it is first needed.
      */
     private List<Segment> path;
 
-    private GetRateListener startListener;
+    /**
+     * The rate START/USD of the E at the beginning of this path.
+     */
+    private double startRateToUSD;
 
     /**
      * Creates a new, empty path containing a start E. Essentially this represents a path
@@ -43,11 +62,36 @@ public class Path<E> implements Iterable<Path<E>.Segment> {
      * @param start The starting E of the path.
      */
     public Path(E start, GetRateListener startListener) {
+        this(start, startListener.getRateToUSD());
+    }
+
+    /**
+     * Creates a new, empty path containing a start E, whose rate START/USD is already known.
+     *
+     * @param start          The starting E of the path.
+     * @param startRateToUSD The rate START/USD.
+     */
+    public Path(E start, double startRateToUSD) {
         this.start = start;
-        this.rate = 1 / startListener.getRateToUSD();
+        this.rate = 1 / startRateToUSD;
         this.cost = 1;
-        this.startListener = startListener;
-        this.path = new ArrayList<>();
+        this.startRateToUSD = startRateToUSD;
+        this.parent = null;
+        this.last = null;
+        this.length = 0;
+    }
+
+    /**
+     * Creates a path that is the given parent path followed by the given segment.
+     */
+    private Path(Path<E> parent, Segment last, double rate, double cost) {
+        this.start = parent.start;
+        this.rate = rate;
+        this.cost = cost;
+        this.startRateToUSD = parent.startRateToUSD;
+        this.parent = parent;
+        this.last = last;
+        this.length = parent.length + 1;
     }
 
     /**
@@ -61,15 +105,22 @@ public class Path<E> implements Iterable<Path<E>.Segment> {
      * @return A new path representing the current path with the given segment appended to the end.
      */
     public Path<E> extend(E newEnd, GetRateListener rateListener) {
+        return extend(newEnd, rateListener.getRate(), rateListener.getRateToUSD());
+    }
 
-        Path<E> extendedPath = new Path<E>(start, startListener);
-        extendedPath.path.addAll(this.path);
-        
-        extendedPath.path.add(new Segment(this.getEnd(), newEnd, rateListener.getRate()));
-        extendedPath.rate = this.rate * rateListener.getRate();
-        extendedPath.cost = extendedPath.rate * rateListener.getRateToUSD();
-
-        return extendedPath;
+    /**
+     * Appends a new single segment to the end of this path, like Path#extend(E, GetRateListener), using rates that
+     * are already known.
+     *
+     * @param newEnd       The E being added at the end of the segment being appended to this path
+     * @param segmentRate  The rate of the segment being appended.
+     * @param endRateToUSD The rate NEWEND/USD.
+     * @return A new path representing the current path with the given segment appended to the end.
+     */
+    public Path<E> extend(E newEnd, double segmentRate, double endRateToUSD) {
+        Segment segment = new Segment(this.getEnd(), newEnd, segmentRate);
+        double extendedRate = this.rate * segmentRate;
+        return new Path<E>(this, segment, extendedRate, extendedRate * endRateToUSD);
     }
 
     /**
@@ -98,10 +149,29 @@ public class Path<E> implements Iterable<Path<E>.Segment> {
      * contains no segments (i.e. this path is from the start E to itself).
      */
     public E getEnd() {
-        if(path.size() == 0) {
+        if(last == null) {
             return start;
         }
-        return path.get(path.size() - 1).getEnd();
+        return last.getEnd();
+    }
+
+    /**
+     * @return The segments of this path in order, building the list the first time it is needed.
+     */
+    private List<Segment> segments() {
+        List<Segment> segments = path;
+        if(segments == null) {
+            @SuppressWarnings("unchecked")
+            Segment[] array = (Segment[]) new Path<?>.Segment[length];
+            Path<E> current = this;
+            for(int i = length - 1; i >= 0; i--) {
+                array[i] = current.last;
+                current = current.parent;
+            }
+            segments = Collections.unmodifiableList(Arrays.asList(array));
+            path = segments;
+        }
+        return segments;
     }
 
     /**
@@ -116,7 +186,7 @@ public class Path<E> implements Iterable<Path<E>.Segment> {
         // Create a wrapping iterator to guarantee exceptional behavior on Iterator#remove.
         return new Iterator<Segment>() {
 
-            private Iterator<Segment> backingIterator = path.iterator();
+            private Iterator<Segment> backingIterator = segments().iterator();
 
             @Override
             public boolean hasNext() {
@@ -153,14 +223,16 @@ public class Path<E> implements Iterable<Path<E>.Segment> {
             return false;
         }
         Path<?> other = (Path<?>) obj;
-        if(this.path.size() != other.path.size()) {
+        if(this.length != other.length) {
             return false;
         }
-        if(this.path.size() == 0 && !this.start.equals(other.start)) {
+        if(this.length == 0 && !this.start.equals(other.start)) {
             return false;
         }
-        for(int i = 0; i < this.path.size(); i++) {
-            if(!this.path.get(i).equals(other.path.get(i))) {
+        List<Segment> segments = this.segments();
+        List<?> otherSegments = other.segments();
+        for(int i = 0; i < this.length; i++) {
+            if(!segments.get(i).equals(otherSegments.get(i))) {
                 return false;
             }
         }
@@ -169,14 +241,14 @@ public class Path<E> implements Iterable<Path<E>.Segment> {
 
     @Override
     public int hashCode() {
-        return (31 * start.hashCode()) + path.hashCode();
+        return (31 * start.hashCode()) + segments().hashCode();
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append(start.toString());
-        for(Segment segment : path) {
+        for(Segment segment : segments()) {
             sb.append(" =(");
             sb.append(String.format("%.3f", segment.getRate()));
             sb.append(")=> ");
@@ -185,16 +257,19 @@ public class Path<E> implements Iterable<Path<E>.Segment> {
         return sb.toString();
     }
 
+    /**
+     * @return {"percent_profit": getCost() - 1, "path": [the start and end of every segment, in order]}
+     * @see PathJsonWriter
+     */
     public String toJSON() {
-        JsonObject jsonObj = new JsonObject();
-        jsonObj.add("percent_profit", new JsonPrimitive(cost - 1));
-        JsonArray currencies = new JsonArray();
-        currencies.add(start.toString());
-        for (Segment segment : path) {
-            currencies.add(segment.getEnd().toString());
-        }
-        jsonObj.add("path", currencies);
-        return jsonObj.toString();
+        return PathJsonWriter.append(this, new StringBuilder()).toString();
+    }
+
+    /**
+     * @return The path this path was extended from, or null if this path contains no segments.
+     */
+    Path<E> getParent() {
+        return parent;
     }
 
     /**
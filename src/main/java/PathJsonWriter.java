@@ -0,0 +1,177 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <b>PathJsonWriter</b> serializes paths to the JSON of Path#toJSON without building a Gson tree. The text is
+ * byte-identical to what Gson's {@code JsonObject.toString()} produced for the same path: percent_profit is written
+ * with Double.toString (NaN and Infinity included), and every currency is escaped the way Gson's JsonWriter escapes
+ * strings, including U+2028 and U+2029.
+ * <p>
+ * The static append methods write into a caller's StringBuilder. An instance writes UTF-8 to an OutputStream through
+ * a StringBuilder and byte buffer it reuses, so once they have grown to fit, writing a path allocates nothing but the
+ * toString() of each currency. An instance is <b>not</b> thread-safe.
+ */
+public class PathJsonWriter {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder text;
+    private byte[] bytes;
+
+    /**
+     * Constructs a writer with empty buffers
+     */
+    public PathJsonWriter() {
+        this.text = new StringBuilder();
+        this.bytes = new byte[256];
+    }
+
+    /**
+     * Appends the JSON of a path
+     *
+     * @param path the path to write
+     * @param out the builder to append to
+     * @spec.modifies out
+     * @return out
+     */
+    public static StringBuilder append(Path<?> path, StringBuilder out) {
+        out.append("{\"percent_profit\":").append(path.getCost() - 1).append(",\"path\":[");
+        appendNodes(path, out);
+        return out.append("]}");
+    }
+
+    /**
+     * Appends the JSON array of the given paths, as Gson would write a JsonArray of their toJSON objects
+     *
+     * @param paths the paths to write
+     * @param out the builder to append to
+     * @spec.modifies out
+     * @return out
+     */
+    public static StringBuilder appendAll(Iterable<? extends Path<?>> paths, StringBuilder out) {
+        out.append('[');
+        boolean first = true;
+        for (Path<?> path : paths) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            append(path, out);
+        }
+        return out.append(']');
+    }
+
+    /**
+     * Writes the JSON of a path as UTF-8
+     *
+     * @param path the path to write
+     * @param out the stream to write to, which is not flushed or closed
+     * @throws IOException if out cannot be written to
+     */
+    public void write(Path<?> path, OutputStream out) throws IOException {
+        text.setLength(0);
+        writeText(append(path, text), out);
+    }
+
+    /**
+     * Writes the JSON array of the given paths as UTF-8
+     *
+     * @param paths the paths to write
+     * @param out the stream to write to, which is not flushed or closed
+     * @throws IOException if out cannot be written to
+     */
+    public void writeAll(Iterable<? extends Path<?>> paths, OutputStream out) throws IOException {
+        text.setLength(0);
+        writeText(appendAll(paths, text), out);
+    }
+
+    /**
+     * Appends every E of path, from its start to its end, as comma separated JSON strings
+     */
+    private static void appendNodes(Path<?> path, StringBuilder out) {
+        Path<?> parent = path.getParent();
+        if (parent != null) {
+            appendNodes(parent, out);
+            out.append(',');
+        }
+        appendString(path.getEnd().toString(), out);
+    }
+
+    /**
+     * Appends value as a JSON string, escaped like Gson's JsonWriter with HTML escaping off
+     */
+    private static void appendString(String value, StringBuilder out) {
+        out.append('"');
+        int length = value.length();
+        int unescaped = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            out.append(value, unescaped, i);
+            unescaped = i + 1;
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                default:
+                    out.append("\\u").append(HEX_DIGITS[c >> 12]).append(HEX_DIGITS[(c >> 8) & 0xf])
+                            .append(HEX_DIGITS[(c >> 4) & 0xf]).append(HEX_DIGITS[c & 0xf]);
+            }
+        }
+        out.append(value, unescaped, length).append('"');
+    }
+
+    /**
+     * Encodes text as UTF-8 into the byte buffer, replacing unpaired surrogates with '?' like String#getBytes, and
+     * writes it to out
+     */
+    private void writeText(CharSequence text, OutputStream out) throws IOException {
+        int length = text.length();
+        if (bytes.length < 3 * length) {
+            bytes = new byte[Math.max(3 * length, 2 * bytes.length)];
+        }
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes[size++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[size++] = (byte) (0xc0 | (c >> 6));
+                bytes[size++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                bytes[size++] = (byte) (0xf0 | (codePoint >> 18));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                bytes[size++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                bytes[size++] = '?';
+            } else {
+                bytes[size++] = (byte) (0xe0 | (c >> 12));
+                bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                bytes[size++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        out.write(bytes, 0, size);
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>PollingRateFeed</b> is a RateFeed that polls ExchangeRateAPI. Every period it fetches the rates between its
+ * currencies with ExchangeRateAPI.fetchSnapshotAsync and pushes every rate to its sinks, so consumers such as
+ * CurrencyWeb receive rates instead of asking the API for them mid-search.
+ */
+public class PollingRateFeed implements RateFeed {
+
+    private final List<String> currencies;
+    private final long periodMillis;
+    private final List<RateSink> sinks;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a feed that has not started polling
+     *
+     * @param currencies the currencies to fetch the rates between
+     * @param periodMillis how long to wait between the start of one poll and the next, in milliseconds
+     * @throws IllegalArgumentException if {@code periodMillis < 1}
+     */
+    public PollingRateFeed(List<String> currencies, long periodMillis) {
+        if (periodMillis < 1) {
+            throw new IllegalArgumentException("periodMillis must be positive");
+        }
+        this.currencies = new ArrayList<>(currencies);
+        this.periodMillis = periodMillis;
+        this.sinks = new CopyOnWriteArrayList<>();
+    }
+
+    @Override
+    public void subscribe(RateSink sink) {
+        sinks.add(sink);
+    }
+
+    /**
+     * Starts polling, with the first poll right away
+     *
+     * @throws IllegalStateException if the feed has already been started
+     */
+    @Override
+    public synchronized void start() {
+        if (scheduler != null) {
+            throw new IllegalStateException("feed already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "polling-rate-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::poll, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Fetches every rate once and pushes them to the sinks. A failed poll is reported and skipped, so the next poll
+     * still runs.
+     */
+    private void poll() {
+        RateSnapshot rates;
+        try {
+            rates = ExchangeRateAPI.fetchSnapshotAsync(currencies).join();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        for (int base = 0; base < rates.size(); base++) {
+            for (int quote = 0; quote < rates.size(); quote++) {
+                if (rates.hasRate(base, quote)) {
+                    for (RateSink sink : sinks) {
+                        sink.onRate(rates.getCurrency(base), rates.getCurrency(quote),
+                                rates.getRate(base, quote), timestamp);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+public interface RateFeed extends AutoCloseable {
+    /**
+     * Adds a sink that every following rate is pushed to
+     *
+     * @param sink the sink to push rates to
+     */
+    void subscribe(RateSink sink);
+
+    /**
+     * Starts pushing rates to the subscribed sinks
+     */
+    void start();
+
+    /**
+     * Stops pushing rates and releases the feed's resources
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,312 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * <b>RateJournal</b> is a thread-safe, append-only log of rates on disk, so the rates seen by one run can be replayed
+ * into a CurrencyWeb by the next one or analyzed later. As a RateSink it can subscribe to a RateFeed and record every
+ * rate the feed pushes.
+ * <p>
+ * The journal is a directory of segment files named rates-NNNNNNNNNN.journal, numbered from 0. Each segment is a
+ * HEADER_SIZE byte header (a magic number, a version and the number of records in the segment) followed by room for
+ * recordsPerSegment fixed-width records of RECORD_SIZE bytes: the timestamp (long), the base and quote currencies
+ * packed by CurrencyRegistry.pack (int each) and the rate (double), all little-endian. The segment being written is
+ * memory-mapped, so appending a record is a few stores into memory; when it is full, the next segment is started.
+ * A crash while a segment is being started can leave the newest segment empty or without a header; such a segment
+ * holds no records, so it is replayed as empty and started again when the journal is next opened.
+ * <p>
+ * Only currencies with three letter A-Z codes can be journaled, since records store packed codes, which unlike
+ * registry ids mean the same thing in every run.
+ */
+public class RateJournal implements RateSink, Closeable {
+
+    public static final int RECORD_SIZE = 24;
+    public static final int HEADER_SIZE = 16;
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 20;
+
+    private static final int MAGIC = 0x52415445;
+    private static final int VERSION = 1;
+    private static final int COUNT_OFFSET = 8;
+    private static final String SEGMENT_PREFIX = "rates-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final File directory;
+    private final int recordsPerSegment;
+
+    // the segment being written; all guarded by this
+    private int segmentNumber;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int segmentCapacity;
+    private int count;
+
+    /**
+     * Opens the journal in the given directory with the default segment size, creating it if it does not exist
+     *
+     * @param directory the directory of the journal
+     * @throws IOException if the journal cannot be opened
+     */
+    public RateJournal(File directory) throws IOException {
+        this(directory, DEFAULT_RECORDS_PER_SEGMENT);
+    }
+
+    /**
+     * Opens the journal in the given directory, creating it if it does not exist. Appends continue after the last
+     * record already in the journal.
+     *
+     * @param directory the directory of the journal
+     * @param recordsPerSegment how many records a new segment has room for
+     * @throws IllegalArgumentException if recordsPerSegment is not positive or a segment would not fit in 2 GiB
+     * @throws IOException if the journal cannot be opened or a segment in it is not a journal segment
+     */
+    public RateJournal(File directory, int recordsPerSegment) throws IOException {
+        if (recordsPerSegment < 1 || recordsPerSegment > (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE) {
+            throw new IllegalArgumentException("recordsPerSegment out of range: " + recordsPerSegment);
+        }
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create journal directory " + directory);
+        }
+        File[] segments = listSegments(directory);
+        if (segments.length == 0) {
+            openSegment(0);
+        } else {
+            openSegment(segmentNumber(segments[segments.length - 1]));
+        }
+    }
+
+    /**
+     * Appends a rate to the journal
+     *
+     * @param baseCurrency the base currency
+     * @param quoteCurrency the quote currency
+     * @param rate the rate BASE/QUOTE
+     * @param timestamp when the rate was observed, in milliseconds since the epoch
+     * @spec.modifies this
+     * @throws IllegalArgumentException if either currency is not a three letter A-Z code
+     * @throws IllegalStateException if the journal is closed
+     * @throws UncheckedIOException if a new segment cannot be started
+     */
+    @Override
+    public void onRate(String baseCurrency, String quoteCurrency, double rate, long timestamp) {
+        int base = CurrencyRegistry.pack(baseCurrency);
+        int quote = CurrencyRegistry.pack(quoteCurrency);
+        if (base == -1 || quote == -1) {
+            throw new IllegalArgumentException("cannot journal " + baseCurrency + "/" + quoteCurrency);
+        }
+        append(timestamp, base, quote, rate);
+    }
+
+    /**
+     * Appends every rate in the given snapshot to the journal
+     *
+     * @param rates the rates to append
+     * @param timestamp when the rates were observed, in milliseconds since the epoch
+     * @spec.modifies this
+     * @throws IllegalArgumentException if a currency in rates is not a three letter A-Z code
+     * @throws IllegalStateException if the journal is closed
+     * @throws UncheckedIOException if a new segment cannot be started
+     */
+    public void append(RateSnapshot rates, long timestamp) {
+        for (int base = 0; base < rates.size(); base++) {
+            for (int quote = 0; quote < rates.size(); quote++) {
+                if (rates.hasRate(base, quote)) {
+                    onRate(rates.getCurrency(base), rates.getCurrency(quote), rates.getRate(base, quote), timestamp);
+                }
+            }
+        }
+    }
+
+    private synchronized void append(long timestamp, int base, int quote, double rate) {
+        if (segment == null) {
+            throw new IllegalStateException("journal is closed");
+        }
+        if (count == segmentCapacity) {
+            try {
+                segment.force();
+                channel.close();
+                openSegment(segmentNumber + 1);
+            } catch (IOException e) {
+                segment = null;
+                throw new UncheckedIOException(e);
+            }
+        }
+        int position = HEADER_SIZE + count * RECORD_SIZE;
+        segment.putLong(position, timestamp);
+        segment.putInt(position + 8, base);
+        segment.putInt(position + 12, quote);
+        segment.putDouble(position + 16, rate);
+        count++;
+        // the count is written after the record, so a reader never sees a count that includes a half-written record
+        segment.putLong(COUNT_OFFSET, count);
+    }
+
+    /**
+     * Writes every record appended so far through to the disk
+     *
+     * @throws IllegalStateException if the journal is closed
+     */
+    public synchronized void flush() {
+        if (segment == null) {
+            throw new IllegalStateException("journal is closed");
+        }
+        segment.force();
+    }
+
+    /**
+     * Flushes and closes the journal. Closing a closed journal has no effect.
+     *
+     * @throws IOException if the segment being written cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+            channel.close();
+        }
+    }
+
+    /**
+     * Pushes every record in the journal in the given directory to sink, oldest first. Records appended while the
+     * replay is running may or may not be replayed.
+     *
+     * @param directory the directory of the journal
+     * @param sink where to push the records
+     * @return the number of records replayed
+     * @throws IOException if a segment cannot be read, is not a journal segment or holds a corrupt record
+     */
+    public static long replay(File directory, RateSink sink) throws IOException {
+        // unpacking is cached so replaying does not create a String per record
+        String[] codes = new String[CurrencyRegistry.PACKED_CODES];
+        long replayed = 0;
+        File[] files = listSegments(directory);
+        for (int fileIndex = 0; fileIndex < files.length; fileIndex++) {
+            File file = files[fileIndex];
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                if (fileIndex == files.length - 1 && isUnstarted(channel)) {
+                    break;
+                }
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                segment.order(ByteOrder.LITTLE_ENDIAN);
+                long count = readCount(segment, file);
+                for (int i = 0; i < count; i++) {
+                    int position = HEADER_SIZE + i * RECORD_SIZE;
+                    String base = unpack(codes, segment.getInt(position + 8), file);
+                    String quote = unpack(codes, segment.getInt(position + 12), file);
+                    sink.onRate(base, quote, segment.getDouble(position + 16), segment.getLong(position));
+                }
+                replayed += count;
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Returns the code packed into a record, unpacking it into codes the first time it is seen
+     */
+    private static String unpack(String[] codes, int packed, File file) throws IOException {
+        if (packed < 0 || packed >= codes.length) {
+            throw new IOException(file + " holds a corrupt currency code: " + packed);
+        }
+        if (codes[packed] == null) {
+            try {
+                codes[packed] = CurrencyRegistry.unpack(packed);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file + " holds a corrupt currency code: " + packed, e);
+            }
+        }
+        return codes[packed];
+    }
+
+    /**
+     * Maps the segment with the given number for writing, creating it if it does not exist or was never started
+     */
+    private void openSegment(int number) throws IOException {
+        File file = new File(directory, String.format("%s%010d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            boolean created = isUnstarted(channel);
+            long length = created ? HEADER_SIZE + (long) recordsPerSegment * RECORD_SIZE : channel.size();
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            if (created) {
+                segment.putLong(COUNT_OFFSET, 0);
+                segment.putInt(4, VERSION);
+                segment.putInt(0, MAGIC);
+                // a crash before this leaves a segment isUnstarted recognizes, so it is started again
+                segment.force();
+                count = 0;
+            } else {
+                count = (int) readCount(segment, file);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        segmentNumber = number;
+        // a segment left by a journal with a different recordsPerSegment keeps its own size
+        segmentCapacity = (segment.capacity() - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    /**
+     * Returns true iff the segment open in channel is shorter than a header or its header is all zeros, which only a
+     * crash while the segment was being started leaves behind
+     */
+    private static boolean isUnstarted(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return true;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) != -1) {
+            // read until the header is full
+        }
+        for (int i = 0; i < HEADER_SIZE; i++) {
+            if (header.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the header of the given segment and returns the number of records in it
+     */
+    private static long readCount(MappedByteBuffer segment, File file) throws IOException {
+        if (segment.capacity() < HEADER_SIZE || segment.getInt(0) != MAGIC || segment.getInt(4) != VERSION) {
+            throw new IOException(file + " is not a rate journal segment");
+        }
+        long count = segment.getLong(COUNT_OFFSET);
+        if (count < 0 || HEADER_SIZE + count * RECORD_SIZE > segment.capacity()) {
+            throw new IOException(file + " is corrupt");
+        }
+        return count;
+    }
+
+    /**
+     * @return the segment files in the given directory, oldest first
+     */
+    private static File[] listSegments(File directory) {
+        File[] segments = directory.listFiles((dir, name) ->
+                name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    private static int segmentNumber(File segment) {
+        String name = segment.getName();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
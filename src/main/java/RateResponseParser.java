@@ -0,0 +1,151 @@
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * <b>RateResponseParser</b> reads the fields ExchangeRateAPI needs out of exchangerate-api.com responses with Gson's
+ * streaming JsonReader. No JsonElement tree is built: fields that are not needed are skipped without being parsed, and
+ * conversion rates are read straight into a double[] indexed by currency id, so a /latest document of 160 rates
+ * allocates no JsonObject or JsonPrimitive per currency.
+ * <p>
+ * Every method reads one whole response from the given Reader, but does not close it. If the response has no field
+ * with the wanted name, an IOException is thrown that includes the response's error-type, if it has one. A value that
+ * is not a number or an object where one is expected is also reported with an IOException.
+ */
+public class RateResponseParser {
+
+    private static final String CONVERSION_RATE = "conversion_rate";
+    private static final String CONVERSION_RATES = "conversion_rates";
+    private static final String REQUESTS_REMAINING = "requests_remaining";
+    private static final String ERROR_TYPE = "error-type";
+
+    private RateResponseParser() {
+    }
+
+    /**
+     * Reads the conversion_rate of a /pair/{base}/{quote} response
+     *
+     * @param in the response
+     * @return the rate BASE/QUOTE
+     * @throws IOException if the response cannot be read, or has no conversion_rate or one that is not a number
+     */
+    public static double readConversionRate(Reader in) throws IOException {
+        JsonReader json = new JsonReader(in);
+        seekField(json, CONVERSION_RATE);
+        return nextDouble(json, CONVERSION_RATE);
+    }
+
+    /**
+     * Reads the requests_remaining of a /quota response
+     *
+     * @param in the response
+     * @return the requests left in the key's quota
+     * @throws IOException if the response cannot be read or has no requests_remaining
+     */
+    public static long readRequestsRemaining(Reader in) throws IOException {
+        JsonReader json = new JsonReader(in);
+        seekField(json, REQUESTS_REMAINING);
+        try {
+            return json.nextLong();
+        } catch (NumberFormatException | IllegalStateException e) {
+            throw new IOException(REQUESTS_REMAINING + " is not a whole number: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the conversion_rates of a /latest/{base} response into an array indexed by currency id. Currencies that
+     * are not in ids, or whose id is rates.length or more, are skipped, and the rates of currencies missing from the
+     * response are left unchanged.
+     *
+     * @param in the response
+     * @param ids the ids of the currencies to read the rates of
+     * @param rates rates[id] is set to the rate BASE/CURRENCY of the currency with that id
+     * @spec.modifies rates
+     * @return the number of rates set
+     * @throws IOException if the response cannot be read, has no conversion_rates, or has a rate that is not a number
+     */
+    public static int readConversionRates(Reader in, CurrencyRegistry ids, double[] rates) throws IOException {
+        JsonReader json = new JsonReader(in);
+        seekField(json, CONVERSION_RATES);
+        int read = 0;
+        beginObject(json, CONVERSION_RATES);
+        while (json.hasNext()) {
+            String code = json.nextName();
+            int id = ids.idOf(code);
+            if (id >= 0 && id < rates.length) {
+                rates[id] = nextDouble(json, code);
+                read++;
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return read;
+    }
+
+    /**
+     * Reads the currency codes of the conversion_rates of a /latest/{base} response
+     *
+     * @param in the response
+     * @return the currencies the response has rates for, in the order of the response
+     * @throws IOException if the response cannot be read or has no conversion_rates
+     */
+    public static Set<String> readCurrencyCodes(Reader in) throws IOException {
+        JsonReader json = new JsonReader(in);
+        seekField(json, CONVERSION_RATES);
+        Set<String> codes = new LinkedHashSet<>();
+        beginObject(json, CONVERSION_RATES);
+        while (json.hasNext()) {
+            codes.add(json.nextName());
+            json.skipValue();
+        }
+        json.endObject();
+        return codes;
+    }
+
+    /**
+     * Reads the next value of json, which is the value of the field with the given name, as a double
+     */
+    private static double nextDouble(JsonReader json, String name) throws IOException {
+        try {
+            return json.nextDouble();
+        } catch (NumberFormatException | IllegalStateException e) {
+            // JsonReader rejects strings that are not numbers and other tokens with unchecked exceptions
+            throw new IOException(name + " is not a number: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Consumes the start of the next value of json, which is the value of the field with the given name, as an object
+     */
+    private static void beginObject(JsonReader json, String name) throws IOException {
+        if (json.peek() != JsonToken.BEGIN_OBJECT) {
+            throw new IOException(name + " is not an object");
+        }
+        json.beginObject();
+    }
+
+    /**
+     * Advances json to the value of the top level field with the given name, skipping every field before it
+     */
+    private static void seekField(JsonReader json, String name) throws IOException {
+        String errorType = null;
+        beginObject(json, "response");
+        while (json.hasNext()) {
+            String field = json.nextName();
+            if (field.equals(name)) {
+                return;
+            }
+            if (field.equals(ERROR_TYPE) && json.peek() == JsonToken.STRING) {
+                errorType = json.nextString();
+            } else {
+                json.skipValue();
+            }
+        }
+        throw new IOException("no " + name + " in response" + (errorType == null ? "" : ", error-type " + errorType));
+    }
+}
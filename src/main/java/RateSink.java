@@ -0,0 +1,11 @@
+public interface RateSink {
+    /**
+     * Receives a new rate BASE/QUOTE
+     *
+     * @param baseCurrency the base currency
+     * @param quoteCurrency the quote currency
+     * @param rate the rate BASE/QUOTE
+     * @param timestamp when the rate was observed, in milliseconds since the epoch
+     */
+    void onRate(String baseCurrency, String quoteCurrency, double rate, long timestamp);
+}
@@ -0,0 +1,235 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <b>RateSnapshot</b> is an <b>immutable</b> capture of every exchange rate in a CurrencyWeb. Every rate listener is
+ * asked for its rate once when the snapshot is taken, so a search that reads from the snapshot never goes back to the
+ * listeners (and the network behind them) and always sees one consistent set of rates.
+ * <p>
+ * Currencies are indexed by their ids in a CurrencyRegistry, so the index of a currency is the same in every snapshot
+ * of a web, and looking an ISO code up never hashes a String.
+ */
+public class RateSnapshot {
+
+    /**
+     * The ids of the currencies. May hold currencies interned after this snapshot was taken, whose ids are size() or
+     * more.
+     */
+    private final CurrencyRegistry registry;
+
+    /**
+     * The currencies and the rate of every edge between them, indexed by currency.
+     */
+    private final CsrGraph<String> rateGraph;
+
+    /**
+     * rates[base][quote] is the best rate BASE/QUOTE, or 0 if there is no exchange rate from base to quote.
+     */
+    private final double[][] rates;
+
+    /**
+     * ratesToUSD[index] is the rate CURRENCY/USD of the currency at index.
+     */
+    private final double[] ratesToUSD;
+
+    /**
+     * The version of the rates this snapshot holds.
+     */
+    private final long version;
+
+    /**
+     * The best conversions between every pair of currencies at these rates, or null until getAllPairs() first
+     * computes them.
+     */
+    private volatile AllPairsConversions allPairs;
+
+    private RateSnapshot(CurrencyRegistry registry, CsrGraph<String> rateGraph, double[][] rates,
+                         double[] ratesToUSD, long version) {
+        this.registry = registry;
+        this.rateGraph = rateGraph;
+        this.rates = rates;
+        this.ratesToUSD = ratesToUSD;
+        this.version = version;
+    }
+
+    /**
+     * Captures the current rate of every edge in the given graph as version 0
+     *
+     * @see #capture(Graph, List, CurrencyRegistry, long)
+     */
+    public static RateSnapshot capture(Graph<String, GetRateListener> graph,
+                                       List<GetRateListener> toUSDPriceListeners, CurrencyRegistry registry) {
+        return capture(graph, toUSDPriceListeners, registry, 0);
+    }
+
+    /**
+     * Captures the current rate of every edge in the given graph. If two currencies are connected by more than one
+     * edge, the best rate between them is kept. getRate() is called once per edge and getRateToUSD() once per currency,
+     * so each call, which may be a network request, is made once per capture.
+     *
+     * @param graph the graph of currencies, labeled by the listener of each exchange rate
+     * @param toUSDPriceListeners the listener at the id of each currency has a getRateToUSD() that returns
+     *                            CURRENCY/USD
+     * @param registry the ids of the currencies
+     * @param version the version of the rates, returned by getVersion()
+     * @spec.requires every node of graph is in registry and has a listener in toUSDPriceListeners
+     * @return a snapshot of the rates in graph
+     */
+    public static RateSnapshot capture(Graph<String, GetRateListener> graph,
+                                       List<GetRateListener> toUSDPriceListeners, CurrencyRegistry registry,
+                                       long version) {
+        CsrGraph<String> rateGraph = graph.freeze(registry::idOf, registry.size(), GetRateListener::getRate);
+        int size = rateGraph.size();
+        double[][] rates = new double[size][size];
+        double[] ratesToUSD = new double[size];
+        for (int base = 0; base < size; base++) {
+            for (int edge = rateGraph.getOutGoingStart(base); edge < rateGraph.getOutGoingEnd(base); edge++) {
+                int quote = rateGraph.getTarget(edge);
+                rates[base][quote] = Math.max(rates[base][quote], rateGraph.getWeight(edge));
+            }
+            if (rateGraph.getNode(base) != null) {
+                ratesToUSD[base] = toUSDPriceListeners.get(base).getRateToUSD();
+            }
+        }
+        return new RateSnapshot(registry, rateGraph, rates, ratesToUSD, version);
+    }
+
+    /**
+     * Creates a snapshot from rates that are already known, as version 0. The arrays are copied, so later changes to
+     * them do not affect the snapshot.
+     *
+     * @param currencies the currency at each index, with no currency listed twice
+     * @param rates rates[base][quote] is the rate BASE/QUOTE, or 0 if there is no exchange rate from base to quote.
+     *              Rates from a currency to itself are ignored.
+     * @param ratesToUSD ratesToUSD[index] is the rate CURRENCY/USD of the currency at index
+     * @spec.requires rates is currencies.size() by currencies.size() and ratesToUSD has currencies.size() entries
+     * @return a snapshot of the given rates
+     */
+    public static RateSnapshot of(List<String> currencies, double[][] rates, double[] ratesToUSD) {
+        int size = currencies.size();
+        CurrencyRegistry registry = new CurrencyRegistry();
+        for (String currency : currencies) {
+            registry.intern(currency);
+        }
+        double[][] ratesCopy = new double[size][];
+        int edgeCount = 0;
+        for (int base = 0; base < size; base++) {
+            ratesCopy[base] = rates[base].clone();
+            ratesCopy[base][base] = 0;
+            for (int quote = 0; quote < size; quote++) {
+                if (ratesCopy[base][quote] > 0) {
+                    edgeCount++;
+                }
+            }
+        }
+
+        int[] offsets = new int[size + 1];
+        int[] targets = new int[edgeCount];
+        double[] weights = new double[edgeCount];
+        int edge = 0;
+        for (int base = 0; base < size; base++) {
+            offsets[base] = edge;
+            for (int quote = 0; quote < size; quote++) {
+                if (ratesCopy[base][quote] > 0) {
+                    targets[edge] = quote;
+                    weights[edge] = ratesCopy[base][quote];
+                    edge++;
+                }
+            }
+        }
+        offsets[size] = edge;
+        CsrGraph<String> rateGraph = new CsrGraph<>(new ArrayList<>(currencies), offsets, targets, weights);
+        return new RateSnapshot(registry, rateGraph, ratesCopy, ratesToUSD.clone(), 0);
+    }
+
+    /**
+     * Returns the edges of the web, weighted by their rate, for searches that scan the neighbors of a currency
+     *
+     * @return the edges of the web, using the same indices as this snapshot
+     */
+    public CsrGraph<String> getRateGraph() {
+        return rateGraph;
+    }
+
+    /**
+     * Returns the version of the rates in this snapshot. A CurrencyWeb numbers its versions in the order they were
+     * written, so of two snapshots of the same web, the one with the higher version holds the later rates.
+     *
+     * @return the version of the rates in this snapshot
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the best conversions between every pair of currencies at these rates. They are computed by the first
+     * call, which every concurrent call waits for, and every later call returns the same conversions.
+     *
+     * @return the best conversions at these rates
+     */
+    public AllPairsConversions getAllPairs() {
+        AllPairsConversions conversions = allPairs;
+        if (conversions == null) {
+            synchronized (this) {
+                conversions = allPairs;
+                if (conversions == null) {
+                    conversions = AllPairsConversions.compute(this);
+                    allPairs = conversions;
+                }
+            }
+        }
+        return conversions;
+    }
+
+    /**
+     * @return the number of currencies in this snapshot
+     */
+    public int size() {
+        return rateGraph.size();
+    }
+
+    /**
+     * Returns the index of the given currency
+     *
+     * @param currency the currency to look up
+     * @return the index of currency, or -1 if it is not in this snapshot
+     */
+    public int indexOf(String currency) {
+        int index = registry.idOf(currency);
+        return index >= 0 && index < size() && rateGraph.getNode(index) != null ? index : -1;
+    }
+
+    /**
+     * @param index the index of a currency
+     * @return the currency at the given index
+     */
+    public String getCurrency(int index) {
+        return rateGraph.getNode(index);
+    }
+
+    /**
+     * @param base the index of the base currency
+     * @param quote the index of the quote currency
+     * @return true iff there is an exchange rate from base to quote
+     */
+    public boolean hasRate(int base, int quote) {
+        return rates[base][quote] > 0;
+    }
+
+    /**
+     * @param base the index of the base currency
+     * @param quote the index of the quote currency
+     * @return the rate BASE/QUOTE, or 0 if there is no exchange rate from base to quote
+     */
+    public double getRate(int base, int quote) {
+        return rates[base][quote];
+    }
+
+    /**
+     * @param index the index of a currency
+     * @return the rate CURRENCY/USD
+     */
+    public double getRateToUSD(int index) {
+        return ratesToUSD[index];
+    }
+}
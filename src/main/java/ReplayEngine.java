@@ -0,0 +1,241 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>ReplayEngine</b> drives a CurrencyWeb from historical ticks stored in local files, so detection can be measured
+ * offline. Every tick is pushed into the web through onRate and then checked for arbitrage with an
+ * IncrementalArbitrageDetector, and the opportunities it creates are passed to the engine's TickListeners. A replay
+ * returns ReplayStats for the whole run.
+ * <p>
+ * Ticks are read from either a CSV file with one {@code timestamp,base,quote,rate} tick per line (a header line, blank
+ * lines and lines starting with # are skipped), or a RateJournal directory. They are replayed either as fast as
+ * possible or paced by their timestamps, sped up by a given factor.
+ * <p>
+ * The detector is built from the web on the first tick of a replay. A tick that adds a new pair of currencies adds
+ * the pair to the detector with addRate instead of rebuilding it, so warming up on a journal costs no more per tick
+ * than detection does later. A ReplayEngine runs one replay at a time.
+ */
+public class ReplayEngine {
+
+    /**
+     * The speed that replays ticks as fast as possible.
+     */
+    public static final double MAX_SPEED = 0;
+
+    /**
+     * The speed that replays ticks at the pace they were observed.
+     */
+    public static final double WALL_CLOCK = 1;
+
+    private final CurrencyWeb web;
+    private final double speed;
+    private final List<TickListener> listeners;
+
+    // the state of the replay in progress
+    private IncrementalArbitrageDetector detector;
+    private long firstTimestamp;
+    private long startNanos;
+    private long ticks;
+    private long ticksWithOpportunities;
+    private long opportunities;
+    private double bestProfit;
+    private long totalDetectionNanos;
+    private long maxDetectionNanos;
+
+    /**
+     * Constructs an engine that replays ticks into the given web
+     *
+     * @param web the web to push ticks into
+     * @param speed how many times faster than they were observed to replay ticks, or MAX_SPEED to replay them as fast
+     *              as possible
+     * @throws IllegalArgumentException if speed is negative
+     */
+    public ReplayEngine(CurrencyWeb web, double speed) {
+        if (!(speed >= 0)) {
+            throw new IllegalArgumentException("speed must not be negative");
+        }
+        this.web = web;
+        this.speed = speed;
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Adds a listener that receives the result of every following tick
+     *
+     * @param listener the listener to add
+     */
+    public void addTickListener(TickListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Replays every tick in a CSV file
+     *
+     * @param file a CSV file with one timestamp,base,quote,rate tick per line
+     * @return statistics for the replay
+     * @throws IOException if the file cannot be read or has a malformed line
+     * @throws CancellationException if the thread is interrupted while pacing ticks
+     */
+    public synchronized ReplayStats replayCsv(File file) throws IOException {
+        start();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int first = line.indexOf(',');
+                int second = first == -1 ? -1 : line.indexOf(',', first + 1);
+                int third = second == -1 ? -1 : line.indexOf(',', second + 1);
+                if (third == -1) {
+                    throw new IOException(file + ":" + lineNumber + ": expected timestamp,base,quote,rate");
+                }
+                long timestamp;
+                double rate;
+                try {
+                    timestamp = Long.parseLong(line.substring(0, first).trim());
+                    rate = Double.parseDouble(line.substring(third + 1).trim());
+                } catch (NumberFormatException e) {
+                    if (lineNumber == 1) {
+                        continue;
+                    }
+                    throw new IOException(file + ":" + lineNumber + ": " + e.getMessage());
+                }
+                tick(line.substring(first + 1, second).trim(), line.substring(second + 1, third).trim(), rate,
+                        timestamp);
+            }
+        }
+        return finish();
+    }
+
+    /**
+     * Replays every tick in a RateJournal
+     *
+     * @param directory the directory of the journal
+     * @return statistics for the replay
+     * @throws IOException if the journal cannot be read
+     * @throws CancellationException if the thread is interrupted while pacing ticks
+     */
+    public synchronized ReplayStats replayJournal(File directory) throws IOException {
+        start();
+        RateJournal.replay(directory, this::tick);
+        return finish();
+    }
+
+    private void start() {
+        detector = null;
+        firstTimestamp = Long.MIN_VALUE;
+        ticks = 0;
+        ticksWithOpportunities = 0;
+        opportunities = 0;
+        bestProfit = 0;
+        totalDetectionNanos = 0;
+        maxDetectionNanos = 0;
+        startNanos = System.nanoTime();
+    }
+
+    private ReplayStats finish() {
+        detector = null;
+        return new ReplayStats(ticks, ticksWithOpportunities, opportunities, bestProfit,
+                System.nanoTime() - startNanos, totalDetectionNanos, maxDetectionNanos);
+    }
+
+    private void tick(String base, String quote, double rate, long timestamp) {
+        pace(timestamp);
+        long started = System.nanoTime();
+        web.onRate(base, quote, rate, timestamp);
+
+        List<Path<String>> found;
+        if (detector == null) {
+            detector = web.createIncrementalDetector();
+            found = new ArrayList<>();
+            for (Path<String> cycle : detector.getOpportunities()) {
+                if (trades(cycle, base, quote)) {
+                    found.add(cycle);
+                }
+            }
+        } else if (base.equals(quote)) {
+            // a rate from a currency to itself is no exchange, so it cannot change any cycle
+            found = new ArrayList<>();
+        } else {
+            // a rate pushed one way also moves the other way's rate while only its inverse is known
+            StripedRateStore liveRates = web.getLiveRates();
+            int liveBase = liveRates.indexOf(base);
+            int liveQuote = liveRates.indexOf(quote);
+            List<Path<String>> forward = detector.addRate(base, quote,
+                    liveRates.getRateOrInverse(liveBase, liveQuote));
+            List<Path<String>> backward = detector.addRate(quote, base,
+                    liveRates.getRateOrInverse(liveQuote, liveBase));
+            if (backward.isEmpty()) {
+                found = forward;
+            } else {
+                found = new ArrayList<>(forward);
+                found.addAll(backward);
+            }
+        }
+        long detectionNanos = System.nanoTime() - started;
+
+        ticks++;
+        totalDetectionNanos += detectionNanos;
+        maxDetectionNanos = Math.max(maxDetectionNanos, detectionNanos);
+        if (!found.isEmpty()) {
+            ticksWithOpportunities++;
+            opportunities += found.size();
+            for (Path<String> cycle : found) {
+                // a cycle starts and ends at the same currency, so its cost is the product of its rates
+                bestProfit = Math.max(bestProfit, cycle.getCost() - 1);
+            }
+        }
+        List<Path<String>> result = Collections.unmodifiableList(found);
+        for (TickListener listener : listeners) {
+            listener.onTick(base, quote, rate, timestamp, result, detectionNanos);
+        }
+    }
+
+    /**
+     * Returns true iff the given cycle exchanges between base and quote, in either direction
+     */
+    private static boolean trades(Path<String> cycle, String base, String quote) {
+        for (Path<String>.Segment segment : cycle) {
+            if ((segment.getStart().equals(base) && segment.getEnd().equals(quote))
+                    || (segment.getStart().equals(quote) && segment.getEnd().equals(base))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * In paced mode, waits until the tick with the given timestamp is due
+     */
+    private void pace(long timestamp) {
+        if (speed == MAX_SPEED) {
+            return;
+        }
+        if (firstTimestamp == Long.MIN_VALUE) {
+            firstTimestamp = timestamp;
+            return;
+        }
+        long due = startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(timestamp - firstTimestamp) / speed);
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("replay interrupted");
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * <b>ReplayStats</b> is an <b>immutable</b> summary of a replay by ReplayEngine.
+ */
+public class ReplayStats {
+
+    private final long ticks;
+    private final long ticksWithOpportunities;
+    private final long opportunities;
+    private final double bestProfit;
+    private final long elapsedNanos;
+    private final long totalDetectionNanos;
+    private final long maxDetectionNanos;
+
+    /**
+     * @param ticks the number of ticks replayed
+     * @param ticksWithOpportunities the number of ticks that created at least one opportunity
+     * @param opportunities the number of opportunities reported over all ticks
+     * @param bestProfit the largest profit of any opportunity, as a fraction of the starting amount
+     * @param elapsedNanos how long the replay took, in nanoseconds
+     * @param totalDetectionNanos how long applying ticks and detecting arbitrage took in total, in nanoseconds
+     * @param maxDetectionNanos the longest any single tick took to apply and detect, in nanoseconds
+     */
+    public ReplayStats(long ticks, long ticksWithOpportunities, long opportunities, double bestProfit,
+                       long elapsedNanos, long totalDetectionNanos, long maxDetectionNanos) {
+        this.ticks = ticks;
+        this.ticksWithOpportunities = ticksWithOpportunities;
+        this.opportunities = opportunities;
+        this.bestProfit = bestProfit;
+        this.elapsedNanos = elapsedNanos;
+        this.totalDetectionNanos = totalDetectionNanos;
+        this.maxDetectionNanos = maxDetectionNanos;
+    }
+
+    /**
+     * @return the number of ticks replayed
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return the number of ticks that created at least one opportunity
+     */
+    public long getTicksWithOpportunities() {
+        return ticksWithOpportunities;
+    }
+
+    /**
+     * @return the number of opportunities reported over all ticks
+     */
+    public long getOpportunities() {
+        return opportunities;
+    }
+
+    /**
+     * @return the largest profit of any opportunity, as a fraction of the starting amount, or 0 if there was none
+     */
+    public double getBestProfit() {
+        return bestProfit;
+    }
+
+    /**
+     * @return how long the replay took, in nanoseconds, including any time spent waiting in wall-clock mode
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the ticks replayed per second
+     */
+    public double getTicksPerSecond() {
+        return elapsedNanos == 0 ? 0 : ticks * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return the mean time to apply a tick and detect arbitrage, in nanoseconds
+     */
+    public double getMeanDetectionNanos() {
+        return ticks == 0 ? 0 : (double) totalDetectionNanos / ticks;
+    }
+
+    /**
+     * @return the longest any single tick took to apply and detect, in nanoseconds
+     */
+    public long getMaxDetectionNanos() {
+        return maxDetectionNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d ticks in %.3f s (%.0f ticks/s), %d with opportunities, %d opportunities, "
+                        + "best profit %.6f, detection mean %.1f us max %.1f us",
+                ticks, elapsedNanos / 1e9, getTicksPerSecond(), ticksWithOpportunities, opportunities, bestProfit,
+                getMeanDetectionNanos() / 1e3, maxDetectionNanos / 1e3);
+    }
+}
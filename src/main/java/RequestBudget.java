@@ -0,0 +1,134 @@
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * <b>RequestBudget</b> keeps an API client within its quota. Requests are spaced out by a per-minute TokenBucket, and
+ * every request is counted against a monthly quota that is refilled at the start of each calendar month (UTC). Once
+ * the monthly quota is spent, requests fail instead of waiting.
+ */
+public class RequestBudget {
+
+    private final long monthlyQuota;
+    private final TokenBucket minuteBucket;
+    private final LongSupplier millisClock;
+
+    /**
+     * The requests left this month. Guarded by this.
+     */
+    private long remaining;
+
+    /**
+     * The month remaining counts down for. Guarded by this.
+     */
+    private YearMonth month;
+
+    /**
+     * Constructs a budget with the whole monthly quota left
+     *
+     * @param monthlyQuota the most requests allowed per calendar month
+     * @param requestsPerMinute the most requests allowed per minute
+     * @throws IllegalArgumentException if monthlyQuota or requestsPerMinute is not positive
+     */
+    public RequestBudget(long monthlyQuota, long requestsPerMinute) {
+        this(monthlyQuota, requestsPerMinute, System::nanoTime, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructs a budget with the whole monthly quota left that tells time with the given clocks
+     *
+     * @param monthlyQuota the most requests allowed per calendar month
+     * @param requestsPerMinute the most requests allowed per minute
+     * @param nanoClock returns the current time in nanoseconds, like System.nanoTime()
+     * @param millisClock returns the current time in milliseconds since the epoch, like System.currentTimeMillis()
+     * @throws IllegalArgumentException if monthlyQuota or requestsPerMinute is not positive
+     */
+    RequestBudget(long monthlyQuota, long requestsPerMinute, LongSupplier nanoClock, LongSupplier millisClock) {
+        if (monthlyQuota < 1) {
+            throw new IllegalArgumentException("monthlyQuota must be positive");
+        }
+        this.monthlyQuota = monthlyQuota;
+        this.minuteBucket = new TokenBucket(requestsPerMinute, requestsPerMinute, 1, TimeUnit.MINUTES, nanoClock);
+        this.millisClock = millisClock;
+        this.remaining = monthlyQuota;
+        this.month = currentMonth();
+    }
+
+    /**
+     * Spends one request, waiting until the per-minute limit allows it
+     *
+     * @spec.modifies this
+     * @throws IllegalStateException if the monthly quota is spent
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        spend();
+        minuteBucket.acquire();
+    }
+
+    /**
+     * Spends one request without blocking
+     *
+     * @spec.modifies this
+     * @return a future that completes when the per-minute limit allows the request, or completes exceptionally with
+     * IllegalStateException if the monthly quota is spent
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        try {
+            spend();
+        } catch (IllegalStateException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return minuteBucket.acquireAsync();
+    }
+
+    /**
+     * @return the requests left this month
+     */
+    public synchronized long getRemainingMonthlyRequests() {
+        resetIfNewMonth();
+        return remaining;
+    }
+
+    /**
+     * Corrects the requests left this month, e.g. with the count reported by the API, which also includes requests
+     * made by other clients
+     *
+     * @param remaining the requests left this month
+     * @spec.modifies this
+     */
+    public synchronized void setRemainingMonthlyRequests(long remaining) {
+        resetIfNewMonth();
+        this.remaining = Math.max(0, Math.min(monthlyQuota, remaining));
+    }
+
+    /**
+     * @return the requests that can be made right now without waiting for the per-minute limit
+     */
+    public long getAvailableMinuteRequests() {
+        return Math.max(0, (long) minuteBucket.getAvailableTokens());
+    }
+
+    private synchronized void spend() {
+        resetIfNewMonth();
+        if (remaining == 0) {
+            throw new IllegalStateException("monthly request quota of " + monthlyQuota + " is spent");
+        }
+        remaining--;
+    }
+
+    private void resetIfNewMonth() {
+        YearMonth now = currentMonth();
+        if (!now.equals(month)) {
+            month = now;
+            remaining = monthlyQuota;
+        }
+    }
+
+    private YearMonth currentMonth() {
+        return YearMonth.from(Instant.ofEpochMilli(millisClock.getAsLong()).atZone(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,270 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <b>StandInRateServer</b> is a local HTTP server that answers the exchangerate-api.com endpoints ExchangeRateAPI
+ * uses, so fetching, caching and concurrency can be tested and benchmarked offline without spending quota. Point
+ * ExchangeRateAPI at it with {@code ExchangeRateAPI.configureBaseUrl(server.getBaseUrl())}.
+ * <p>
+ * It serves GET /latest/{base}, GET /pair/{base}/{quote} and GET /quota, answered from a RateSnapshot that can be
+ * swapped at any time, e.g. for a synthetic one or one replayed from a RateJournal into a CurrencyWeb. Every response
+ * can be delayed by a fixed latency plus random jitter, a given fraction of requests can be failed with HTTP 500, and
+ * chosen currencies can be made unavailable.
+ */
+public class StandInRateServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests;
+
+    private volatile RateSnapshot rates;
+    private volatile long latencyMillis;
+    private volatile long jitterMillis;
+    private volatile double errorRate;
+    private volatile long requestsRemaining;
+    private volatile Set<String> unavailable;
+
+    /**
+     * Starts a server on the loopback interface
+     *
+     * @param rates the rates to serve
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the server cannot be started
+     */
+    public StandInRateServer(RateSnapshot rates, int port) throws IOException {
+        this.rates = rates;
+        this.requests = new AtomicLong();
+        this.requestsRemaining = Long.MAX_VALUE;
+        this.unavailable = Set.of();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        // responses sleep to simulate latency, so each request gets its own thread
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stand-in-rate-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Creates rates between the given currencies for testing. Each currency gets a random rate to USD, and the rate
+     * between two currencies is the ratio of their rates to USD less a random spread of up to maxSpread.
+     *
+     * @param currencies the currencies to create rates between
+     * @param maxSpread the largest fraction a rate is below the ratio of the two currencies' rates to USD
+     * @param seed the seed of the random rates
+     * @return a snapshot of the created rates
+     */
+    public static RateSnapshot syntheticRates(List<String> currencies, double maxSpread, long seed) {
+        Random random = new Random(seed);
+        int size = currencies.size();
+        double[] ratesToUSD = new double[size];
+        for (int i = 0; i < size; i++) {
+            boolean usd = currencies.get(i).equalsIgnoreCase(ExchangeRateAPI.USD);
+            ratesToUSD[i] = usd ? 1 : 0.01 + random.nextDouble() * 2;
+        }
+        double[][] rates = new double[size][size];
+        for (int base = 0; base < size; base++) {
+            for (int quote = 0; quote < size; quote++) {
+                if (base != quote) {
+                    rates[base][quote] = ratesToUSD[base] / ratesToUSD[quote] * (1 - random.nextDouble() * maxSpread);
+                }
+            }
+        }
+        return RateSnapshot.of(currencies, rates, ratesToUSD);
+    }
+
+    /**
+     * @return the URL to pass to ExchangeRateAPI.configureBaseUrl
+     */
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/v6/stand-in";
+    }
+
+    /**
+     * Replaces the rates served by following requests
+     *
+     * @param rates the rates to serve
+     */
+    public void setRates(RateSnapshot rates) {
+        this.rates = rates;
+    }
+
+    /**
+     * Delays every following response by latencyMillis plus a random amount up to jitterMillis
+     *
+     * @param latencyMillis the least delay, in milliseconds
+     * @param jitterMillis the most extra random delay, in milliseconds
+     * @throws IllegalArgumentException if either is negative
+     */
+    public void setLatency(long latencyMillis, long jitterMillis) {
+        if (latencyMillis < 0 || jitterMillis < 0) {
+            throw new IllegalArgumentException("latency and jitter must not be negative");
+        }
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * Fails the given fraction of following requests with HTTP 500
+     *
+     * @param errorRate the chance each request fails, from 0 to 1
+     * @throws IllegalArgumentException if errorRate is not between 0 and 1
+     */
+    public void setErrorRate(double errorRate) {
+        if (!(errorRate >= 0 && errorRate <= 1)) {
+            throw new IllegalArgumentException("errorRate must be between 0 and 1");
+        }
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Answers following requests for the rates of the given base currencies with HTTP 404 and error-type
+     * unsupported-code, as exchangerate-api.com answers currencies it does not support
+     *
+     * @param currencies the base currencies to fail requests for, replacing those set before
+     */
+    public void setUnavailableCurrencies(Collection<String> currencies) {
+        Set<String> codes = new HashSet<>();
+        for (String currency : currencies) {
+            codes.add(currency.toUpperCase(Locale.ROOT));
+        }
+        this.unavailable = codes;
+    }
+
+    /**
+     * Sets the requests_remaining that following GET /quota requests report, which is Long.MAX_VALUE until set
+     *
+     * @param requestsRemaining the requests left this month to report
+     */
+    public void setRequestsRemaining(long requestsRemaining) {
+        this.requestsRemaining = requestsRemaining;
+    }
+
+    /**
+     * @return the number of requests received so far, including failed ones
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Stops the server
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = latencyMillis + (jitterMillis == 0 ? 0 : random.nextLong(jitterMillis + 1));
+            if (delay > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                respond(exchange, 500, "{\"result\":\"error\",\"error-type\":\"injected-failure\"}");
+                return;
+            }
+
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            int endpoint = parts.length - 1;
+            while (endpoint >= 0 && !parts[endpoint].equals("latest") && !parts[endpoint].equals("pair")
+                    && !parts[endpoint].equals("quota")) {
+                endpoint--;
+            }
+            RateSnapshot current = rates;
+            if (endpoint >= 0 && parts[endpoint].equals("quota")) {
+                respond(exchange, 200, "{\"result\":\"success\",\"plan_quota\":" + Long.MAX_VALUE
+                        + ",\"requests_remaining\":" + requestsRemaining + "}");
+            } else if (endpoint >= 0 && parts[endpoint].equals("latest") && parts.length == endpoint + 2) {
+                int base = indexOf(current, parts[endpoint + 1]);
+                if (base == -1) {
+                    respond(exchange, 404, "{\"result\":\"error\",\"error-type\":\"unsupported-code\"}");
+                    return;
+                }
+                respond(exchange, 200, latestJson(current, base));
+            } else if (endpoint >= 0 && parts[endpoint].equals("pair") && parts.length == endpoint + 3) {
+                int base = indexOf(current, parts[endpoint + 1]);
+                int quote = current.indexOf(parts[endpoint + 2].toUpperCase(Locale.ROOT));
+                if (base == -1 || quote == -1) {
+                    respond(exchange, 404, "{\"result\":\"error\",\"error-type\":\"unsupported-code\"}");
+                    return;
+                }
+                respond(exchange, 200, "{\"result\":\"success\",\"base_code\":\"" + current.getCurrency(base)
+                        + "\",\"target_code\":\"" + current.getCurrency(quote) + "\",\"conversion_rate\":"
+                        + rate(current, base, quote) + "}");
+            } else {
+                respond(exchange, 404, "{\"result\":\"error\",\"error-type\":\"unknown-endpoint\"}");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the index of the given base currency in rates, or -1 if it is not there or is unavailable
+     */
+    private int indexOf(RateSnapshot rates, String base) {
+        String code = base.toUpperCase(Locale.ROOT);
+        return unavailable.contains(code) ? -1 : rates.indexOf(code);
+    }
+
+    private static String latestJson(RateSnapshot rates, int base) {
+        StringBuilder json = new StringBuilder("{\"result\":\"success\",\"base_code\":\"")
+                .append(rates.getCurrency(base)).append("\",\"conversion_rates\":{");
+        boolean hasUSD = false;
+        for (int quote = 0; quote < rates.size(); quote++) {
+            if (quote > 0) {
+                json.append(',');
+            }
+            String currency = rates.getCurrency(quote);
+            hasUSD |= currency.equalsIgnoreCase(ExchangeRateAPI.USD);
+            json.append('"').append(currency).append("\":").append(rate(rates, base, quote));
+        }
+        if (!hasUSD) {
+            json.append(rates.size() > 0 ? "," : "").append("\"USD\":").append(rates.getRateToUSD(base));
+        }
+        return json.append("}}").toString();
+    }
+
+    private static double rate(RateSnapshot rates, int base, int quote) {
+        return base == quote ? 1 : rates.getRate(base, quote);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
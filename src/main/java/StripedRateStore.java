@@ -0,0 +1,305 @@
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * <b>StripedRateStore</b> is a thread-safe store of the latest rate between every pair of currencies, striped by base
+ * currency. Each currency is indexed by its id in the store's own CurrencyRegistry, so only currencies stored here
+ * count against its capacity, and each base currency owns a row of the rates and timestamps from it, guarded by its
+ * own StampedLock.
+ * <p>
+ * A write only locks the row it changes, so feeds writing different base currencies never contend, and a rate and its
+ * timestamp are always written together. Reads are optimistic: they read without locking and only fall back to the
+ * row's read lock if a write to the row overlapped them, so readers never block writers and a whole row can be copied
+ * consistently with readRow. A RowCopies reads a consistent copy of every row it touches, so a capture of many rates
+ * sees each row as of a single moment.
+ */
+public class StripedRateStore {
+
+    private final int capacity;
+
+    /**
+     * The index of each currency. Only interned through intern, so it never holds more than capacity currencies.
+     */
+    private final CurrencyRegistry registry;
+
+    /**
+     * rows[base] holds the rates and timestamps from the currency at base.
+     */
+    private final Row[] rows;
+
+    /**
+     * The rates and timestamps from one base currency. Each row's lock is allocated right before its arrays, so the
+     * locks of neighboring rows are kept apart in memory and writers of different rows do not share a cache line.
+     */
+    private static final class Row {
+
+        private final StampedLock lock;
+
+        /**
+         * rates[quote] is the rate BASE/QUOTE, or 0 if there is no rate yet.
+         */
+        private final double[] rates;
+
+        /**
+         * timestamps[quote] is when rates[quote] was observed.
+         */
+        private final long[] timestamps;
+
+        private Row(int capacity) {
+            this.lock = new StampedLock();
+            this.rates = new double[capacity];
+            this.timestamps = new long[capacity];
+        }
+    }
+
+    /**
+     * Constructs an empty store
+     *
+     * @param capacity the most currencies the store can hold
+     * @throws IllegalArgumentException if {@code capacity < 1}
+     */
+    public StripedRateStore(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.registry = new CurrencyRegistry();
+        this.rows = new Row[capacity];
+        for (int base = 0; base < capacity; base++) {
+            rows[base] = new Row(capacity);
+        }
+    }
+
+    /**
+     * @return the most currencies the store can hold
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the index of the given currency, giving it the next free index if it has not been seen before
+     *
+     * @param currency the currency to look up
+     * @return the index of currency
+     * @throws IllegalStateException if currency is new and the store already holds capacity currencies
+     */
+    public int intern(String currency) {
+        int index = registry.idOf(currency);
+        if (index != -1) {
+            return index;
+        }
+        // checking the size and interning happen together, so racing new currencies cannot overfill the registry
+        synchronized (registry) {
+            index = registry.idOf(currency);
+            if (index == -1) {
+                if (registry.size() >= capacity) {
+                    throw new IllegalStateException("store is full, cannot add " + currency);
+                }
+                index = registry.intern(currency);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * @param currency the currency to look up
+     * @return the index of currency, or -1 if it has not been seen
+     */
+    public int indexOf(String currency) {
+        return registry.idOf(currency);
+    }
+
+    /**
+     * @param index the index of a currency
+     * @return the currency at index, or null if the index is unused
+     */
+    public String getCurrency(int index) {
+        return index < registry.size() ? registry.getCode(index) : null;
+    }
+
+    /**
+     * Stores a rate
+     *
+     * @param base the index of the base currency
+     * @param quote the index of the quote currency
+     * @param rate the rate BASE/QUOTE
+     * @param timestamp when the rate was observed
+     */
+    public void set(int base, int quote, double rate, long timestamp) {
+        Row row = rows[base];
+        long stamp = row.lock.writeLock();
+        try {
+            row.rates[quote] = rate;
+            row.timestamps[quote] = timestamp;
+        } finally {
+            row.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Stores every positive rate from one base currency in a single write, so no reader sees some of them without the
+     * rest
+     *
+     * @param base the index of the base currency
+     * @param rates rates[quote] is the rate BASE/QUOTE, or 0 to keep the stored rate
+     * @param timestamp when the rates were observed
+     * @spec.requires {@code rates.length <= capacity()}
+     */
+    public void setRow(int base, double[] rates, long timestamp) {
+        Row row = rows[base];
+        long stamp = row.lock.writeLock();
+        try {
+            for (int quote = 0; quote < rates.length; quote++) {
+                if (rates[quote] > 0) {
+                    row.rates[quote] = rates[quote];
+                    row.timestamps[quote] = timestamp;
+                }
+            }
+        } finally {
+            row.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param base the index of the base currency
+     * @param quote the index of the quote currency
+     * @return the latest rate BASE/QUOTE, or 0 if no rate has been stored
+     */
+    public double getRate(int base, int quote) {
+        Row row = rows[base];
+        long stamp = row.lock.tryOptimisticRead();
+        double rate = row.rates[quote];
+        if (!row.lock.validate(stamp)) {
+            stamp = row.lock.readLock();
+            try {
+                rate = row.rates[quote];
+            } finally {
+                row.lock.unlockRead(stamp);
+            }
+        }
+        return rate;
+    }
+
+    /**
+     * Returns the latest rate BASE/QUOTE, or the inverse of the latest rate QUOTE/BASE if only that one is known
+     *
+     * @param base the index of the base currency
+     * @param quote the index of the quote currency
+     * @return the latest known rate BASE/QUOTE, or 0 if neither direction is known
+     */
+    public double getRateOrInverse(int base, int quote) {
+        if (base == quote) {
+            return 1;
+        }
+        double rate = getRate(base, quote);
+        if (rate > 0) {
+            return rate;
+        }
+        double inverse = getRate(quote, base);
+        return inverse > 0 ? 1 / inverse : 0;
+    }
+
+    /**
+     * @param base the index of the base currency
+     * @param quote the index of the quote currency
+     * @return when the latest rate BASE/QUOTE was observed, or 0 if no rate has been stored
+     */
+    public long getTimestamp(int base, int quote) {
+        Row row = rows[base];
+        long stamp = row.lock.tryOptimisticRead();
+        long timestamp = row.timestamps[quote];
+        if (!row.lock.validate(stamp)) {
+            stamp = row.lock.readLock();
+            try {
+                timestamp = row.timestamps[quote];
+            } finally {
+                row.lock.unlockRead(stamp);
+            }
+        }
+        return timestamp;
+    }
+
+    /**
+     * Copies every rate from one base currency as of a single moment, without blocking writers unless a write to the
+     * row overlaps the copy
+     *
+     * @param base the index of the base currency
+     * @param into into[quote] is set to the rate BASE/QUOTE, or 0 if no rate has been stored
+     * @spec.modifies into
+     * @spec.requires {@code into.length >= capacity()}
+     * @return into
+     */
+    public double[] readRow(int base, double[] into) {
+        Row row = rows[base];
+        long stamp = row.lock.tryOptimisticRead();
+        System.arraycopy(row.rates, 0, into, 0, capacity);
+        if (!row.lock.validate(stamp)) {
+            stamp = row.lock.readLock();
+            try {
+                System.arraycopy(row.rates, 0, into, 0, capacity);
+            } finally {
+                row.lock.unlockRead(stamp);
+            }
+        }
+        return into;
+    }
+
+    /**
+     * Returns a reader that copies each row of this store with readRow the first time it is read, and reads every rate
+     * of that row from the copy after that
+     *
+     * @return a reader of consistent rows of this store
+     */
+    public RowCopies rowCopies() {
+        return new RowCopies();
+    }
+
+    /**
+     * <b>RowCopies</b> reads rates from copies of the rows of a StripedRateStore, each taken as of a single moment the
+     * first time the row is read. A RowCopies is <b>not</b> thread-safe.
+     */
+    public class RowCopies {
+
+        /**
+         * copies[base] is the copy of the row of base, or null if it has not been read.
+         */
+        private final double[][] copies = new double[capacity][];
+
+        private RowCopies() {
+        }
+
+        /**
+         * @param base the index of the base currency
+         * @param quote the index of the quote currency
+         * @return the rate BASE/QUOTE in the copy of the row of base, or 0 if it had no rate
+         */
+        public double getRate(int base, int quote) {
+            double[] copy = copies[base];
+            if (copy == null) {
+                copy = readRow(base, new double[capacity]);
+                copies[base] = copy;
+            }
+            return copy[quote];
+        }
+
+        /**
+         * Returns the rate BASE/QUOTE, or the inverse of the rate QUOTE/BASE if only that one is known, in the copies
+         * of their rows
+         *
+         * @param base the index of the base currency
+         * @param quote the index of the quote currency
+         * @return the known rate BASE/QUOTE, or 0 if neither direction is known
+         */
+        public double getRateOrInverse(int base, int quote) {
+            if (base == quote) {
+                return 1;
+            }
+            double rate = getRate(base, quote);
+            if (rate > 0) {
+                return rate;
+            }
+            double inverse = getRate(quote, base);
+            return inverse > 0 ? 1 / inverse : 0;
+        }
+    }
+}
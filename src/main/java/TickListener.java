@@ -0,0 +1,16 @@
+import java.util.List;
+
+public interface TickListener {
+    /**
+     * Receives the result of replaying one tick
+     *
+     * @param baseCurrency the base currency of the tick
+     * @param quoteCurrency the quote currency of the tick
+     * @param rate the rate BASE/QUOTE of the tick
+     * @param timestamp when the rate was observed, in milliseconds since the epoch
+     * @param opportunities the profitable cycles the tick created, each as a Path from a currency back to itself
+     * @param detectionNanos how long applying the tick and detecting arbitrage took, in nanoseconds
+     */
+    void onTick(String baseCurrency, String quoteCurrency, double rate, long timestamp,
+                List<Path<String>> opportunities, long detectionNanos);
+}
@@ -0,0 +1,127 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * <b>TokenBucket</b> is a thread-safe rate limiter. The bucket holds up to capacity tokens and refills continuously at
+ * a fixed rate; every permit takes one token. A caller that finds the bucket empty reserves the next token anyway and
+ * waits until it has been refilled, so waiting callers are served in the order they asked.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final LongSupplier nanoClock;
+
+    /**
+     * The tokens in the bucket as of lastRefill; negative while tokens are reserved ahead of time. Guarded by this.
+     */
+    private double tokens;
+
+    /**
+     * The time of nanoClock tokens was last brought up to date. Guarded by this.
+     */
+    private long lastRefill;
+
+    /**
+     * Constructs a full bucket
+     *
+     * @param capacity the most tokens the bucket holds, which is the largest burst it allows
+     * @param tokensPerPeriod how many tokens are added to the bucket every period
+     * @param period the length of the period
+     * @param unit the unit of period
+     * @throws IllegalArgumentException if capacity, tokensPerPeriod or period is not positive
+     */
+    public TokenBucket(long capacity, long tokensPerPeriod, long period, TimeUnit unit) {
+        this(capacity, tokensPerPeriod, period, unit, System::nanoTime);
+    }
+
+    /**
+     * Constructs a full bucket that tells time with the given clock
+     *
+     * @param capacity the most tokens the bucket holds, which is the largest burst it allows
+     * @param tokensPerPeriod how many tokens are added to the bucket every period
+     * @param period the length of the period
+     * @param unit the unit of period
+     * @param nanoClock returns the current time in nanoseconds, like System.nanoTime()
+     * @throws IllegalArgumentException if capacity, tokensPerPeriod or period is not positive
+     */
+    TokenBucket(long capacity, long tokensPerPeriod, long period, TimeUnit unit, LongSupplier nanoClock) {
+        if (capacity < 1 || tokensPerPeriod < 1 || period < 1) {
+            throw new IllegalArgumentException("capacity, tokensPerPeriod and period must be positive");
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = (double) tokensPerPeriod / unit.toNanos(period);
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes a token if one is available right now
+     *
+     * @spec.modifies this
+     * @return true iff a token was taken
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    /**
+     * Takes a token, waiting for the bucket to refill if it is empty
+     *
+     * @spec.modifies this
+     * @throws InterruptedException if the thread is interrupted while waiting; the token stays spent
+     */
+    public void acquire() throws InterruptedException {
+        long wait = reserve();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Takes a token without blocking
+     *
+     * @spec.modifies this
+     * @return a future that completes when the token is available
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        long wait = reserve();
+        if (wait <= 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> { },
+                CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * @return the tokens in the bucket right now, which is negative while tokens are reserved ahead of time
+     */
+    public synchronized double getAvailableTokens() {
+        refill();
+        return tokens;
+    }
+
+    /**
+     * Takes a token, going into debt if the bucket is empty
+     *
+     * @return how many nanoseconds until the taken token has been refilled
+     */
+    private synchronized long reserve() {
+        refill();
+        tokens--;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
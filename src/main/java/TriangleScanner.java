@@ -0,0 +1,214 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <b>TriangleScanner</b> finds the most profitable triangular arbitrage in a RateSnapshot, i.e. the cycles
+ * A -> B -> C -> A whose rates multiply to more than 1. Every triple of currencies is checked, which for a few hundred
+ * currencies is faster than a general cycle search because nothing but three multiplications is done per triple.
+ * <p>
+ * The rates are copied into a dense row-major matrix and its transpose, so for a fixed A and B, the rates B/C and C/A
+ * for every C are both contiguous. The products for all C are first computed into a scratch row by a loop simple
+ * enough for the JIT to compile to SIMD instructions, and the row is then scanned for products above the threshold.
+ * The first currency of each triangle is handled by a separate ForkJoin task. Once a task has found limit triangles,
+ * the least profitable of them becomes a bar shared by every task, since no triangle below it can be among the best.
+ * <p>
+ * Each triangle is reported once, starting from the currency with the lowest index.
+ */
+public class TriangleScanner {
+
+    /**
+     * Webs with fewer currencies than this are scanned on the calling thread, where forking would cost more than it
+     * saves.
+     */
+    static final int PARALLEL_THRESHOLD = 64;
+
+    private final RateSnapshot rates;
+    private final int size;
+
+    /**
+     * rows[base * size + quote] is the rate BASE/QUOTE, or 0 if there is none.
+     */
+    private final double[] rows;
+
+    /**
+     * columns[quote * size + base] is the rate BASE/QUOTE, or 0 if there is none.
+     */
+    private final double[] columns;
+
+    /**
+     * Builds a scanner over the rates in the given snapshot
+     *
+     * @param rates the rates to scan
+     */
+    public TriangleScanner(RateSnapshot rates) {
+        this.rates = rates;
+        this.size = rates.size();
+        this.rows = new double[size * size];
+        this.columns = new double[size * size];
+        for (int base = 0; base < size; base++) {
+            for (int quote = 0; quote < size; quote++) {
+                double rate = rates.getRate(base, quote);
+                rows[base * size + quote] = rate;
+                columns[quote * size + base] = rate;
+            }
+        }
+    }
+
+    /**
+     * @return the snapshot this scans
+     */
+    public RateSnapshot getRates() {
+        return rates;
+    }
+
+    /**
+     * Finds the most profitable triangles on the common ForkJoinPool
+     *
+     * @param limit the most triangles to return
+     * @param minProfit the least profit a triangle must make, as a fraction of the starting amount
+     * @return at most limit triangles whose rates multiply to more than 1 + minProfit, most profitable first, each as
+     * the three currency indices in order
+     * @throws IllegalArgumentException if {@code limit < 1}
+     */
+    public List<int[]> scan(int limit, double minProfit) {
+        return scan(limit, minProfit, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Finds the most profitable triangles
+     *
+     * @param limit the most triangles to return
+     * @param minProfit the least profit a triangle must make, as a fraction of the starting amount
+     * @param pool the pool the scan runs on
+     * @return at most limit triangles whose rates multiply to more than 1 + minProfit, most profitable first, each as
+     * the three currency indices in order
+     * @throws IllegalArgumentException if {@code limit < 1}
+     */
+    public List<int[]> scan(int limit, double minProfit, ForkJoinPool pool) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        AtomicLong bar = new AtomicLong(Double.doubleToLongBits(1 + minProfit));
+        PriorityQueue<Triangle> best;
+        if (size < PARALLEL_THRESHOLD) {
+            best = new PriorityQueue<>();
+            double[] products = new double[size];
+            for (int first = 0; first < size; first++) {
+                scanFrom(first, limit, bar, products, best);
+            }
+        } else {
+            best = pool.invoke(new Scan(limit, bar, 0, size));
+        }
+        List<Triangle> triangles = new ArrayList<>(best);
+        triangles.sort((triangle1, triangle2) -> Double.compare(triangle2.product, triangle1.product));
+        List<int[]> result = new ArrayList<>();
+        for (Triangle triangle : triangles) {
+            result.add(new int[] {triangle.first, triangle.second, triangle.third});
+        }
+        return result;
+    }
+
+    /**
+     * Adds every triangle starting at first whose product is above bar to best, keeping only the limit best and
+     * raising bar to the least of them once there are limit
+     *
+     * @param bar the bits of the least product a triangle needs to be kept
+     * @param products scratch space with room for size products
+     */
+    private void scanFrom(int first, int limit, AtomicLong bar, double[] products, PriorityQueue<Triangle> best) {
+        int firstRow = first * size;
+        // every triangle through a currency below first was already reported starting from that currency
+        for (int second = first + 1; second < size; second++) {
+            double firstRate = rows[firstRow + second];
+            if (firstRate == 0) {
+                continue;
+            }
+            int secondRow = second * size;
+            for (int third = first + 1; third < size; third++) {
+                products[third] = rows[secondRow + third] * columns[firstRow + third];
+            }
+            double threshold = Double.longBitsToDouble(bar.get());
+            for (int third = first + 1; third < size; third++) {
+                double product = firstRate * products[third];
+                if (product > threshold && third != second) {
+                    best.offer(new Triangle(first, second, third, product));
+                    if (best.size() > limit) {
+                        best.poll();
+                    }
+                    if (best.size() == limit) {
+                        // products are positive, so their bits order the same way they do
+                        long raised = bar.accumulateAndGet(Double.doubleToLongBits(best.peek().product), Math::max);
+                        threshold = Double.longBitsToDouble(raised);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans the triangles starting at currencies start to end, splitting the range in half until one currency is left
+     */
+    private class Scan extends RecursiveTask<PriorityQueue<Triangle>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int limit;
+        private final AtomicLong bar;
+        private final int start;
+        private final int end;
+
+        private Scan(int limit, AtomicLong bar, int start, int end) {
+            this.limit = limit;
+            this.bar = bar;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected PriorityQueue<Triangle> compute() {
+            if (end - start <= 1) {
+                PriorityQueue<Triangle> best = new PriorityQueue<>();
+                if (end > start) {
+                    scanFrom(start, limit, bar, new double[size], best);
+                }
+                return best;
+            }
+            int middle = (start + end) >>> 1;
+            Scan left = new Scan(limit, bar, start, middle);
+            left.fork();
+            PriorityQueue<Triangle> best = new Scan(limit, bar, middle, end).compute();
+            for (Triangle triangle : left.join()) {
+                best.offer(triangle);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * A triangle and the product of its rates, ordered from least to most profitable
+     */
+    private static class Triangle implements Comparable<Triangle> {
+        private final int first;
+        private final int second;
+        private final int third;
+        private final double product;
+
+        private Triangle(int first, int second, int third, double product) {
+            this.first = first;
+            this.second = second;
+            this.third = third;
+            this.product = product;
+        }
+
+        @Override
+        public int compareTo(Triangle other) {
+            return Double.compare(product, other.product);
+        }
+    }
+}
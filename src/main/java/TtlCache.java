@@ -0,0 +1,192 @@
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * <b>TtlCache</b> is a thread-safe cache whose values expire a fixed time after they are loaded. It holds at most
+ * maxSize values and evicts the least recently used value to make room for a new one. When several threads miss on
+ * the same key at once, only the first one runs the loader and the others wait for its result, so a burst of requests
+ * for one key causes a single load.
+ */
+public class TtlCache<K, V> {
+
+    private final long ttlNanos;
+    private final int maxSize;
+    private final LongSupplier nanoClock;
+
+    /**
+     * The cached values in least to most recently used order. Guarded by this.
+     */
+    private final LinkedHashMap<K, CachedValue<V>> entries;
+
+    /**
+     * The loads currently running, by key. Guarded by this.
+     */
+    private final Map<K, CompletableFuture<V>> inFlight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs an empty cache
+     *
+     * @param ttlMillis how long a value stays in the cache after it is loaded, in milliseconds
+     * @param maxSize the most values the cache holds at once
+     * @throws IllegalArgumentException if {@code ttlMillis < 0 || maxSize < 1}
+     */
+    public TtlCache(long ttlMillis, int maxSize) {
+        this(ttlMillis, maxSize, System::nanoTime);
+    }
+
+    /**
+     * Constructs an empty cache that tells time with the given clock
+     *
+     * @param ttlMillis how long a value stays in the cache after it is loaded, in milliseconds
+     * @param maxSize the most values the cache holds at once
+     * @param nanoClock returns the current time in nanoseconds, like System.nanoTime()
+     * @throws IllegalArgumentException if {@code ttlMillis < 0 || maxSize < 1}
+     */
+    TtlCache(long ttlMillis, int maxSize, LongSupplier nanoClock) {
+        if (ttlMillis < 0 || maxSize < 1) {
+            throw new IllegalArgumentException("ttlMillis must not be negative and maxSize must be positive");
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxSize = maxSize;
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<K, CachedValue<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CachedValue<V>> eldest) {
+                if (size() > TtlCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.inFlight = new HashMap<>();
+    }
+
+    /**
+     * Returns the cached value for key, loading it with loader if it is missing or expired. If another thread is
+     * already loading key, waits for that load instead of starting another.
+     *
+     * @param key the key to look up
+     * @param loader computes the value for key on a miss
+     * @return the value for key
+     * @throws Exception if the load of key fails, or the thread is interrupted while waiting for it
+     */
+    public V get(K key, Callable<? extends V> loader) throws Exception {
+        CompletableFuture<V> load;
+        boolean loading = false;
+        synchronized (this) {
+            CachedValue<V> entry = entries.get(key);
+            if (entry != null) {
+                if (nanoClock.getAsLong() - entry.loadedAt < ttlNanos) {
+                    hits.incrementAndGet();
+                    return entry.value;
+                }
+                entries.remove(key);
+            }
+            load = inFlight.get(key);
+            if (load == null) {
+                load = new CompletableFuture<>();
+                inFlight.put(key, load);
+                loading = true;
+                misses.incrementAndGet();
+            } else {
+                coalesced.incrementAndGet();
+            }
+        }
+
+        if (loading) {
+            // the load is always completed and removed, even if loader throws an Error, so no caller waits forever
+            try {
+                V value = loader.call();
+                synchronized (this) {
+                    entries.put(key, new CachedValue<>(value, nanoClock.getAsLong()));
+                }
+                load.complete(value);
+                return value;
+            } catch (Throwable e) {
+                load.completeExceptionally(e);
+                throw e;
+            } finally {
+                synchronized (this) {
+                    inFlight.remove(key);
+                }
+            }
+        }
+
+        try {
+            return load.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Removes every value from this
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of values in this, including expired values that have not been removed yet
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that ran the loader
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of lookups that missed but waited for another thread's load instead of running the loader
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of values removed to stay within maxSize
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    private static class CachedValue<V> {
+        private final V value;
+        private final long loadedAt;
+
+        private CachedValue(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -4,10 +4,14 @@ public class mainRealAPI {
     private static final Random random = new Random();
 
     public static void main(String[] args) {
-        // limit web to 10 currencies because of API rate limit
-        List<String> currencies = new ArrayList<>(ExchangeRateAPI.getAvailableCurrencies()).subList(0, 10);
+        // bulk loading costs one API call per currency, so load as many currencies as the quota left allows
+        ExchangeRateAPI.syncRequestBudget();
+        List<String> currencies = ExchangeRateAPI.selectAffordableCurrencies(
+                ExchangeRateAPI.getAvailableCurrencies(), 1);
 
-        CurrencyWeb currencyWeb = ExchangeRateAPI.buildWeb(currencies);
+        CurrencyWeb currencyWeb = ExchangeRateAPI.buildWeb(currencies, true);
+        // every pair below is searched at the same rates, so compute them all at once
+        currencyWeb.setAllPairsEnabled(true);
 
         int size = currencies.size();
         for (int i = 0; i < 5; i++) {
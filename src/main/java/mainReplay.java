@@ -0,0 +1,23 @@
+import java.io.File;
+import java.io.IOException;
+
+public class mainReplay {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: mainReplay <ticks.csv | journal directory> [speed, 0 for as fast as possible]");
+            System.exit(1);
+        }
+        File source = new File(args[0]);
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : ReplayEngine.MAX_SPEED;
+
+        ReplayEngine engine = new ReplayEngine(new CurrencyWeb(), speed);
+        engine.addTickListener((base, quote, rate, timestamp, opportunities, detectionNanos) -> {
+            for (Path<String> cycle : opportunities) {
+                System.out.println(timestamp + " " + base + "/" + quote + " " + rate + ": " + cycle.toJSON());
+            }
+        });
+        ReplayStats stats = source.isDirectory() ? engine.replayJournal(source) : engine.replayCsv(source);
+        System.out.println(stats);
+    }
+}
@@ -0,0 +1,27 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class mainService {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: mainService <port> [refresh minutes, default 60] [query threads]");
+            System.exit(1);
+        }
+        int port = Integer.parseInt(args[0]);
+        long refreshMinutes = args.length > 1 ? Long.parseLong(args[1]) : 60;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        // every refresh costs one API call per currency, so load as many currencies as a month of refreshes allows
+        ExchangeRateAPI.syncRequestBudget();
+        int refreshesPerMonth = (int) Math.max(1, TimeUnit.DAYS.toMinutes(31) / refreshMinutes);
+        List<String> currencies = ExchangeRateAPI.selectAffordableCurrencies(
+                ExchangeRateAPI.getAvailableCurrencies(), refreshesPerMonth);
+
+        ArbitrageService service = new ArbitrageService(currencies, TimeUnit.MINUTES.toMillis(refreshMinutes));
+        service.start(port, threads);
+        System.out.println("Serving " + currencies.size() + " currencies on port " + service.getPort());
+        Thread.currentThread().join();
+    }
+}
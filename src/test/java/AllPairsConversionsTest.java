@@ -0,0 +1,167 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the blocked, parallel Floyd-Warshall of AllPairsConversions against every simple path of small webs, and
+ * against a plain Floyd-Warshall on webs that span several tiles.
+ */
+public class AllPairsConversionsTest {
+
+    @Test
+    public void bestRatesMatchBruteForce() {
+        Random random = new Random(14);
+        for (int trial = 0; trial < 100; trial++) {
+            RateSnapshot rates = BruteForce.randomRates(random, 1 + random.nextInt(7), 0.9, 0.999, 0.4);
+            AllPairsConversions conversions = AllPairsConversions.compute(rates);
+            for (int base = 0; base < rates.size(); base++) {
+                for (int quote = 0; quote < rates.size(); quote++) {
+                    if (base == quote) {
+                        assertNull(conversions.route(base, quote));
+                        continue;
+                    }
+                    double best = BruteForce.bestRate(rates, base, quote);
+                    assertEquals(best, conversions.getBestRate(base, quote), best * 1e-9);
+                    assertRoute(rates, conversions, base, quote, best);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void tiledParallelResultMatchesPlainFloydWarshall() {
+        Random random = new Random(15);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int size : new int[]{AllPairsConversions.BLOCK - 1, AllPairsConversions.BLOCK + 1,
+                    2 * AllPairsConversions.BLOCK + 7}) {
+                RateSnapshot rates = BruteForce.randomRates(random, size, 0.95, 0.999, 0.9);
+                double[][] expected = plainFloydWarshall(rates);
+                AllPairsConversions conversions = AllPairsConversions.compute(rates, pool);
+                for (int base = 0; base < size; base++) {
+                    for (int quote = 0; quote < size; quote++) {
+                        double best = base == quote ? 1 : Math.exp(-expected[base][quote]);
+                        assertEquals(best, conversions.getBestRate(base, quote), best * 1e-9);
+                        if (base != quote) {
+                            assertRoute(rates, conversions, base, quote, best);
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void noRoutesThroughProfitableCycle() {
+        // every currency can reach the profitable cycle 0 -> 1 -> 0
+        double[][] rates = {
+                {0, 1.1, 0.5},
+                {1, 0, 0.5},
+                {2, 2, 0}
+        };
+        RateSnapshot snapshot = RateSnapshot.of(BruteForce.currencies(3), rates, new double[]{1, 1, 1});
+        AllPairsConversions conversions = AllPairsConversions.compute(snapshot);
+        for (int base = 0; base < 3; base++) {
+            for (int quote = 0; quote < 3; quote++) {
+                assertNull(conversions.route(base, quote));
+            }
+        }
+    }
+
+    @Test
+    public void webReadsRoutesFromConversionsInAllPairsMode() {
+        RateSnapshot rates = BruteForce.randomRates(new Random(16), 7, 0.9, 0.999, 0.5);
+        CurrencyWeb web = ExchangeRateAPI.buildWeb(rates);
+        web.setAllPairsEnabled(true);
+        for (int base = 0; base < rates.size(); base++) {
+            for (int quote = 0; quote < rates.size(); quote++) {
+                double best = BruteForce.bestRate(rates, base, quote);
+                if (base == quote || best == 0) {
+                    continue;
+                }
+                Path<String> path = web.findArbitragePath(rates.getCurrency(base), rates.getCurrency(quote));
+                assertNotNull(path);
+                double product = 1;
+                for (Path<String>.Segment segment : path) {
+                    product *= segment.getRate();
+                }
+                assertEquals(best, product, best * 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void conversionsAreKeptWithTheirSnapshot() {
+        CurrencyWeb web = new CurrencyWeb();
+        web.setAllPairsEnabled(true);
+        RateSnapshot first = web.onRates(BruteForce.randomRates(new Random(24), 5, 0.9, 0.999, 0), 1);
+        AllPairsConversions firstConversions = web.getAllPairs(first);
+        RateSnapshot second = web.onRates(BruteForce.randomRates(new Random(25), 5, 0.9, 0.999, 0), 2);
+        assertSame(second, web.getAllPairs().getRates());
+        // a search still reading the older version gets its conversions back instead of recomputing them
+        assertSame(firstConversions, web.getAllPairs(first));
+        assertSame(first, firstConversions.getRates());
+    }
+
+    /**
+     * Asserts that the route from base to quote is a simple path whose rates multiply to best, or missing iff best is 0
+     */
+    private static void assertRoute(RateSnapshot rates, AllPairsConversions conversions, int base, int quote,
+                                    double best) {
+        int[] route = conversions.route(base, quote);
+        if (best == 0) {
+            assertNull(route);
+            return;
+        }
+        assertNotNull(route);
+        assertEquals(base, route[0]);
+        assertEquals(quote, route[route.length - 1]);
+        boolean[] visited = new boolean[rates.size()];
+        double product = 1;
+        for (int i = 0; i < route.length; i++) {
+            assertFalse(visited[route[i]]);
+            visited[route[i]] = true;
+            if (i > 0) {
+                assertTrue(rates.hasRate(route[i - 1], route[i]));
+                product *= rates.getRate(route[i - 1], route[i]);
+            }
+        }
+        assertEquals(best, product, best * 1e-9);
+        assertArrayEquals(route, conversions.route(base, quote));
+    }
+
+    /**
+     * Returns -log of the best rate between every pair, by the textbook triple loop
+     */
+    private static double[][] plainFloydWarshall(RateSnapshot rates) {
+        int size = rates.size();
+        double[][] distances = new double[size][size];
+        for (int base = 0; base < size; base++) {
+            for (int quote = 0; quote < size; quote++) {
+                distances[base][quote] = base == quote ? 0
+                        : rates.hasRate(base, quote) ? -Math.log(rates.getRate(base, quote))
+                        : Double.POSITIVE_INFINITY;
+            }
+        }
+        for (int via = 0; via < size; via++) {
+            for (int base = 0; base < size; base++) {
+                for (int quote = 0; quote < size; quote++) {
+                    distances[base][quote] = Math.min(distances[base][quote],
+                            distances[base][via] + distances[via][quote]);
+                }
+            }
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,102 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks ArbitrageDetector and CurrencyWeb#findArbitrageCycles against every simple cycle of small random webs.
+ */
+public class ArbitrageDetectorTest {
+
+    @Test
+    public void findsNoCyclesWithoutArbitrage() {
+        Random random = new Random(1);
+        for (int trial = 0; trial < 200; trial++) {
+            // every rate is below the ratio of the currencies' USD rates, so every cycle loses money
+            RateSnapshot rates = BruteForce.randomRates(random, 2 + random.nextInt(40), 0.9, 0.999, 0.2);
+            assertTrue(new ArbitrageDetector(rates).findCycles().isEmpty());
+        }
+    }
+
+    @Test
+    public void findsArbitrageExactlyWhenSomeCycleIsProfitable() {
+        Random random = new Random(2);
+        int withArbitrage = 0;
+        for (int trial = 0; trial < 500; trial++) {
+            RateSnapshot rates = BruteForce.randomRates(random, 2 + random.nextInt(6), 0.97, 1.03, 0.3);
+            double best = BruteForce.bestCycleProduct(rates);
+            if (Math.abs(best - 1) < 1e-9) {
+                continue;
+            }
+            List<int[]> cycles = new ArbitrageDetector(rates).findCycles();
+            assertEquals(best > 1, !cycles.isEmpty());
+            for (int[] cycle : cycles) {
+                assertTrue(BruteForce.isSimpleCycle(rates, cycle));
+                assertTrue(BruteForce.product(rates, cycle) > 1);
+            }
+            if (best > 1) {
+                withArbitrage++;
+            }
+        }
+        // both outcomes have to be exercised for the comparison to mean anything
+        assertTrue(withArbitrage > 50 && withArbitrage < 450);
+    }
+
+    @Test
+    public void findsSingleProfitableCycleInLargeWeb() {
+        Random random = new Random(3);
+        int size = 80;
+        RateSnapshot fair = BruteForce.randomRates(random, size, 0.99, 0.999, 0);
+        double[][] rates = new double[size][size];
+        double[] ratesToUSD = new double[size];
+        for (int base = 0; base < size; base++) {
+            ratesToUSD[base] = fair.getRateToUSD(base);
+            for (int quote = 0; quote < size; quote++) {
+                rates[base][quote] = fair.getRate(base, quote);
+            }
+        }
+        int[] planted = {7, 42, 19, 63, 5};
+        for (int i = 0; i < planted.length; i++) {
+            int base = planted[i];
+            int quote = planted[(i + 1) % planted.length];
+            rates[base][quote] = ratesToUSD[base] / ratesToUSD[quote] * 1.01;
+        }
+        RateSnapshot withCycle = RateSnapshot.of(BruteForce.currencies(size), rates, ratesToUSD);
+
+        List<int[]> cycles = new ArbitrageDetector(withCycle).findCycles();
+        assertFalse(cycles.isEmpty());
+        for (int[] cycle : cycles) {
+            assertTrue(BruteForce.isSimpleCycle(withCycle, cycle));
+            assertTrue(BruteForce.product(withCycle, cycle) > 1);
+        }
+    }
+
+    @Test
+    public void webReturnsCyclesAsPathsMostProfitableFirst() {
+        CurrencyWeb web = new CurrencyWeb();
+        // USD -> EUR -> GBP -> USD makes 1.1 * 0.9 * 1.05 = 1.0395
+        addRate(web, "USD", "EUR", 1.1, 1 / 1.1);
+        addRate(web, "EUR", "GBP", 0.9, 1 / 0.95);
+        addRate(web, "GBP", "USD", 1.05, 1 / 1.05);
+
+        List<Path<String>> cycles = web.findArbitrageCycles();
+        assertFalse(cycles.isEmpty());
+        for (int i = 0; i < cycles.size(); i++) {
+            Path<String> cycle = cycles.get(i);
+            assertEquals(cycle.getStart(), cycle.getEnd());
+            assertTrue(cycle.getRate() > 1);
+            if (i > 0) {
+                assertTrue(cycles.get(i - 1).getCost() >= cycle.getCost());
+            }
+        }
+        assertEquals(1.0395, cycles.get(0).getRate(), 1e-9);
+    }
+
+    private static void addRate(CurrencyWeb web, String base, String quote, double rate, double inverse) {
+        web.addExchangeRate(base, quote, new FixedRate(rate), new FixedRate(inverse));
+    }
+}
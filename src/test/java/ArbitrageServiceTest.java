@@ -0,0 +1,77 @@
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the status codes ArbitrageService answers queries with, over rates served by a StandInRateServer.
+ */
+public class ArbitrageServiceTest {
+    private static final List<String> CURRENCIES = List.of("USD", "EUR", "GBP", "JPY");
+
+    private static String apiUrl;
+    private static StandInRateServer rateServer;
+    private static ArbitrageService service;
+
+    @BeforeAll
+    public static void start() throws IOException {
+        apiUrl = ExchangeRateAPI.getBaseUrl();
+        rateServer = new StandInRateServer(StandInRateServer.syntheticRates(CURRENCIES, 0.01, 23), 0);
+        ExchangeRateAPI.configureBaseUrl(rateServer.getBaseUrl());
+        service = new ArbitrageService(CURRENCIES, 60_000);
+        service.start(0, 2);
+    }
+
+    @AfterAll
+    public static void stop() {
+        service.close();
+        rateServer.close();
+        ExchangeRateAPI.configureBaseUrl(apiUrl);
+    }
+
+    @Test
+    public void answersWellFormedQueries() throws IOException {
+        assertEquals(200, status("/arbitrage?from=USD&to=EUR"));
+        assertEquals(200, status("/arbitrage?from=%55SD&to=EUR"));
+        assertEquals(200, status("/cycles?limit=5"));
+    }
+
+    @Test
+    public void rejectsMalformedEscapes() throws IOException {
+        assertEquals(400, status("/arbitrage?from=%zz&to=EUR"));
+        assertEquals(400, status("/arbitrage?from=USD&to=%E"));
+        assertEquals(400, status("/cycles?limit=%zz"));
+    }
+
+    @Test
+    public void rejectsOversizedCycleQueries() throws IOException {
+        assertEquals(200, status("/cycles?limit=" + ArbitrageService.MAX_CYCLE_LIMIT + "&maxHops="
+                + ArbitrageService.MAX_HOPS_LIMIT));
+        assertEquals(400, status("/cycles?maxHops=" + (ArbitrageService.MAX_HOPS_LIMIT + 1)));
+        assertEquals(400, status("/cycles?maxHops=2147483647"));
+        assertEquals(400, status("/cycles?limit=" + (ArbitrageService.MAX_CYCLE_LIMIT + 1)));
+        assertEquals(400, status("/cycles?limit=0"));
+    }
+
+    @Test
+    public void rejectsMissingAndUnknownCurrencies() throws IOException {
+        assertEquals(400, status("/arbitrage?from=USD"));
+        assertEquals(404, status("/arbitrage?from=USD&to=XYZ"));
+    }
+
+    private static int status(String query) throws IOException {
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL("http://localhost:" + service.getPort() + query).openConnection();
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * <b>BruteForce</b> builds random RateSnapshots and answers questions about them by trying every simple path or
+ * cycle, as an oracle for the searches that avoid doing so. Only usable for a handful of currencies.
+ */
+final class BruteForce {
+
+    private BruteForce() {
+    }
+
+    /**
+     * Returns size three letter codes, starting at AAA
+     */
+    static List<String> currencies(int size) {
+        List<String> currencies = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            currencies.add("" + (char) ('A' + i / 676) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26));
+        }
+        return currencies;
+    }
+
+    /**
+     * Creates rates between size currencies. Each rate is the ratio of the two currencies' random rates to USD times a
+     * factor drawn uniformly from [low, high), and each rate is missing with the given chance.
+     *
+     * @param random the source of the rates
+     * @param size the number of currencies
+     * @param low the least factor
+     * @param high the most factor
+     * @param missing the chance each rate is left out
+     * @return a snapshot of the created rates
+     */
+    static RateSnapshot randomRates(Random random, int size, double low, double high, double missing) {
+        double[] ratesToUSD = new double[size];
+        for (int i = 0; i < size; i++) {
+            ratesToUSD[i] = 0.01 + random.nextDouble() * 3;
+        }
+        double[][] rates = new double[size][size];
+        for (int base = 0; base < size; base++) {
+            for (int quote = 0; quote < size; quote++) {
+                if (base != quote && random.nextDouble() >= missing) {
+                    rates[base][quote] = ratesToUSD[base] / ratesToUSD[quote]
+                            * (low + random.nextDouble() * (high - low));
+                }
+            }
+        }
+        return RateSnapshot.of(currencies(size), rates, ratesToUSD);
+    }
+
+    /**
+     * Returns the product of the rates around the given cycle, or 0 if one of its rates is missing
+     */
+    static double product(RateSnapshot rates, int[] cycle) {
+        double product = 1;
+        for (int i = 0; i < cycle.length; i++) {
+            product *= rates.getRate(cycle[i], cycle[(i + 1) % cycle.length]);
+        }
+        return product;
+    }
+
+    /**
+     * Returns true iff the given cycle has at least two currencies and visits each at most once
+     */
+    static boolean isSimpleCycle(RateSnapshot rates, int[] cycle) {
+        boolean[] seen = new boolean[rates.size()];
+        for (int currency : cycle) {
+            if (seen[currency]) {
+                return false;
+            }
+            seen[currency] = true;
+        }
+        return cycle.length >= 2;
+    }
+
+    /**
+     * Returns the product of every simple cycle of at most maxHops rates, each cycle counted once, most profitable
+     * first
+     */
+    static List<Double> cycleProducts(RateSnapshot rates, int maxHops) {
+        List<Double> products = new ArrayList<>();
+        boolean[] visited = new boolean[rates.size()];
+        for (int start = 0; start < rates.size(); start++) {
+            visited[start] = true;
+            collectCycles(rates, start, start, 1, 1, maxHops, visited, products);
+            visited[start] = false;
+        }
+        products.sort((product1, product2) -> Double.compare(product2, product1));
+        return products;
+    }
+
+    /**
+     * Adds the product of every cycle through start that continues from current, visiting only currencies above start
+     */
+    private static void collectCycles(RateSnapshot rates, int start, int current, double product, int hops,
+                                      int maxHops, boolean[] visited, List<Double> products) {
+        if (hops >= 2 && rates.hasRate(current, start)) {
+            products.add(product * rates.getRate(current, start));
+        }
+        if (hops == maxHops) {
+            return;
+        }
+        for (int next = start + 1; next < rates.size(); next++) {
+            if (!visited[next] && rates.hasRate(current, next)) {
+                visited[next] = true;
+                collectCycles(rates, start, next, product * rates.getRate(current, next), hops + 1, maxHops,
+                        visited, products);
+                visited[next] = false;
+            }
+        }
+    }
+
+    /**
+     * Returns the product of the most profitable simple cycle, or 0 if there is no cycle
+     */
+    static double bestCycleProduct(RateSnapshot rates) {
+        List<Double> products = cycleProducts(rates, rates.size());
+        return products.isEmpty() ? 0 : products.get(0);
+    }
+
+    /**
+     * Returns the best product of rates along any simple path from base to quote, or 0 if there is none
+     */
+    static double bestRate(RateSnapshot rates, int base, int quote) {
+        boolean[] visited = new boolean[rates.size()];
+        visited[base] = true;
+        return bestRate(rates, base, quote, visited);
+    }
+
+    private static double bestRate(RateSnapshot rates, int current, int quote, boolean[] visited) {
+        double best = 0;
+        for (int next = 0; next < rates.size(); next++) {
+            if (!visited[next] && rates.hasRate(current, next)) {
+                double rate = rates.getRate(current, next);
+                if (next != quote) {
+                    visited[next] = true;
+                    rate *= bestRate(rates, next, quote, visited);
+                    visited[next] = false;
+                }
+                best = Math.max(best, rate);
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,228 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks rates pushed into CurrencyWeb as a RateSink, alone and while other threads search the web.
+ */
+public class CurrencyWebRateSinkTest {
+
+    @Test
+    public void searchesReadPushedRates() {
+        CurrencyWeb web = new CurrencyWeb();
+        web.onRate("USD", "EUR", 0.9, 1);
+        assertEquals(0.9, onlyRate(web.findArbitragePath("USD", "EUR")));
+
+        // the other way is the inverse until a rate is pushed for it
+        assertEquals(1 / 0.9, onlyRate(web.findArbitragePath("EUR", "USD")), 1e-12);
+        web.onRate("EUR", "USD", 1.1, 2);
+        assertEquals(1.1, onlyRate(web.findArbitragePath("EUR", "USD")));
+
+        web.onRate("USD", "EUR", 0.95, 3);
+        assertEquals(0.95, onlyRate(web.findArbitragePath("USD", "EUR")));
+        assertEquals(3, web.getLiveRates().getTimestamp(web.getLiveRates().indexOf("USD"),
+                web.getLiveRates().indexOf("EUR")));
+    }
+
+    @Test
+    public void rejectsCurrenciesBeyondCapacity() {
+        CurrencyWeb web = new CurrencyWeb(2);
+        web.onRate("USD", "EUR", 0.9, 1);
+        assertThrows(IllegalStateException.class, () -> web.onRate("USD", "GBP", 0.8, 1));
+    }
+
+    @Test
+    public void addedCurrenciesLeavePushCapacity() {
+        CurrencyWeb web = new CurrencyWeb(2);
+        RateSnapshot rates = BruteForce.randomRates(new Random(13), 5, 0.99, 0.999, 0);
+        for (int base = 0; base < rates.size(); base++) {
+            for (int quote = base + 1; quote < rates.size(); quote++) {
+                web.addExchangeRate(rates.getCurrency(base), rates.getCurrency(quote), new FixedRate(1),
+                        new FixedRate(1));
+            }
+        }
+        web.onRate("USD", "EUR", 0.9, 1);
+        assertEquals(0.9, onlyRate(web.findArbitragePath("USD", "EUR")));
+        assertThrows(IllegalStateException.class, () -> web.onRate("USD", "GBP", 0.8, 1));
+    }
+
+    @Test
+    public void searchesRunWhilePairsArePushed() throws InterruptedException {
+        List<String> currencies = BruteForce.currencies(40);
+        double[] ratesToUSD = new double[currencies.size()];
+        Random seed = new Random(12);
+        for (int i = 0; i < ratesToUSD.length; i++) {
+            ratesToUSD[i] = 0.01 + seed.nextDouble() * 3;
+        }
+        CurrencyWeb web = new CurrencyWeb();
+        web.onRate(currencies.get(0), currencies.get(1), ratesToUSD[0] / ratesToUSD[1] * 0.999, 0);
+        // searches never wait for a capture, so the first pair is published before they start
+        web.getRateSnapshot();
+
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean pushing = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<>();
+        for (int feed = 0; feed < 2; feed++) {
+            int feedSeed = feed;
+            threads.add(new Thread(() -> {
+                Random random = new Random(feedSeed);
+                try {
+                    // every pair is new at first, so each push changes the graph
+                    for (int tick = 0; tick < 20_000; tick++) {
+                        int base = random.nextInt(currencies.size());
+                        int quote = random.nextInt(currencies.size());
+                        if (base != quote) {
+                            web.onRate(currencies.get(base), currencies.get(quote),
+                                    ratesToUSD[base] / ratesToUSD[quote] * (0.99 + random.nextDouble() * 0.009),
+                                    tick);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (int searcher = 0; searcher < 2; searcher++) {
+            threads.add(new Thread(() -> {
+                long lastVersion = -1;
+                try {
+                    while (pushing.get()) {
+                        RateSnapshot rates = web.getRateSnapshot();
+                        assertTrue(rates.getVersion() >= lastVersion);
+                        lastVersion = rates.getVersion();
+                        assertNotNull(web.findArbitragePath(rates, currencies.get(0), currencies.get(1)));
+                        for (Path<String> cycle : web.findArbitrageCycles(rates)) {
+                            assertEquals(cycle.getStart(), cycle.getEnd());
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        threads.get(0).join();
+        threads.get(1).join();
+        pushing.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(failures.isEmpty(), () -> "failed: " + failures.peek());
+        assertEquals(currencies.size(), web.getCurrencies().size());
+    }
+
+    @Test
+    public void searchesSeeWholeVersionsWhileSnapshotsArePushed() throws InterruptedException {
+        List<String> currencies = BruteForce.currencies(20);
+        double[] ratesToUSD = new double[currencies.size()];
+        Random seed = new Random(25);
+        for (int i = 0; i < ratesToUSD.length; i++) {
+            ratesToUSD[i] = 0.01 + seed.nextDouble() * 3;
+        }
+        CurrencyWeb web = new CurrencyWeb();
+        web.setAllPairsEnabled(true);
+        web.onRates(scaledRates(currencies, ratesToUSD, 1), 0);
+
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean pushing = new AtomicBoolean(true);
+        List<Thread> writers = new ArrayList<>();
+        writers.add(new Thread(() -> {
+            try {
+                // every rate of a push is scaled by the same factor, so a search can tell pushes apart
+                for (int push = 1; push <= 300; push++) {
+                    web.onRates(scaledRates(currencies, ratesToUSD, 1 - push % 50 * 0.001), push);
+                }
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        }));
+        writers.add(new Thread(() -> {
+            try {
+                // ticks between currencies the pushes leave alone
+                for (int tick = 0; tick < 20_000; tick++) {
+                    web.onRate("XAA", "XAB", 1 + tick % 7 * 0.01, tick);
+                }
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        }));
+        List<Thread> searchers = new ArrayList<>();
+        for (int searcher = 0; searcher < 2; searcher++) {
+            searchers.add(new Thread(() -> {
+                long lastVersion = -1;
+                try {
+                    while (pushing.get()) {
+                        RateSnapshot rates = web.getRateSnapshot();
+                        assertTrue(rates.getVersion() >= lastVersion);
+                        lastVersion = rates.getVersion();
+                        assertSame(rates, web.getAllPairs(rates).getRates());
+                        int first = rates.indexOf(currencies.get(0));
+                        int second = rates.indexOf(currencies.get(1));
+                        double factor = rates.getRate(first, second) / (ratesToUSD[0] / ratesToUSD[1]);
+                        for (int base = 0; base < currencies.size(); base++) {
+                            for (int quote = 0; quote < currencies.size(); quote++) {
+                                if (base != quote) {
+                                    double rate = rates.getRate(rates.indexOf(currencies.get(base)),
+                                            rates.indexOf(currencies.get(quote)));
+                                    assertEquals(factor, rate / (ratesToUSD[base] / ratesToUSD[quote]), 1e-9);
+                                }
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread thread : searchers) {
+            thread.start();
+        }
+        for (Thread thread : writers) {
+            thread.start();
+        }
+        for (Thread thread : writers) {
+            thread.join();
+        }
+        pushing.set(false);
+        for (Thread thread : searchers) {
+            thread.join();
+        }
+        assertTrue(failures.isEmpty(), () -> "failed: " + failures.peek());
+        assertEquals(1 + 19_999 % 7 * 0.01, onlyRate(web.findArbitragePath("XAA", "XAB")), 1e-12);
+    }
+
+    /**
+     * Returns the rates between currencies at the ratio of their rates to USD times factor
+     */
+    private static RateSnapshot scaledRates(List<String> currencies, double[] ratesToUSD, double factor) {
+        double[][] rates = new double[currencies.size()][currencies.size()];
+        for (int base = 0; base < currencies.size(); base++) {
+            for (int quote = 0; quote < currencies.size(); quote++) {
+                rates[base][quote] = ratesToUSD[base] / ratesToUSD[quote] * factor;
+            }
+        }
+        return RateSnapshot.of(currencies, rates, ratesToUSD);
+    }
+
+    /**
+     * Returns the rate of the single exchange along path
+     */
+    private static double onlyRate(Path<String> path) {
+        Path<String>.Segment segment = path.iterator().next();
+        assertEquals(path.getStart(), segment.getStart());
+        assertEquals(path.getEnd(), segment.getEnd());
+        return segment.getRate();
+    }
+}
@@ -0,0 +1,83 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the cycles ranked by CycleEnumerator against every simple cycle of random webs, searched on the calling
+ * thread and as ForkJoin tasks.
+ */
+public class CycleEnumeratorTest {
+
+    @Test
+    public void smallWebsMatchBruteForce() {
+        Random random = new Random(16);
+        for (int trial = 0; trial < 300; trial++) {
+            RateSnapshot rates = BruteForce.randomRates(random, 2 + random.nextInt(7), 0.97, 1.03, 0.3);
+            int maxHops = 2 + random.nextInt(rates.size());
+            int limit = 1 + random.nextInt(10);
+            assertMatchesBruteForce(rates, limit, maxHops, random.nextDouble() * 0.02,
+                    ForkJoinPool.commonPool());
+        }
+    }
+
+    @Test
+    public void parallelSearchMatchesBruteForce() {
+        Random random = new Random(17);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int trial = 0; trial < 6; trial++) {
+                int size = CycleEnumerator.PARALLEL_THRESHOLD + random.nextInt(20);
+                RateSnapshot rates = BruteForce.randomRates(random, size, 0.97, 1.03, 0.5);
+                assertMatchesBruteForce(rates, 1 + random.nextInt(50), 2 + random.nextInt(3), 0.01, pool);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void findsNothingWithoutArbitrage() {
+        RateSnapshot rates = BruteForce.randomRates(new Random(18), 30, 0.9, 0.999, 0.2);
+        assertTrue(new CycleEnumerator(rates).findCycles(10, 6, 0).isEmpty());
+    }
+
+    @Test
+    public void rejectsInvalidLimits() {
+        CycleEnumerator enumerator = new CycleEnumerator(BruteForce.randomRates(new Random(19), 3, 0.9, 1.1, 0));
+        assertThrows(IllegalArgumentException.class, () -> enumerator.findCycles(0, 3, 0));
+        assertThrows(IllegalArgumentException.class, () -> enumerator.findCycles(5, 1, 0));
+    }
+
+    /**
+     * Asserts that the enumerated cycles are the limit most profitable simple cycles of at most maxHops exchanges that
+     * beat 1 + minProfit, most profitable first
+     */
+    private static void assertMatchesBruteForce(RateSnapshot rates, int limit, int maxHops, double minProfit,
+                                                ForkJoinPool pool) {
+        List<Double> expected = new ArrayList<>();
+        for (double product : BruteForce.cycleProducts(rates, maxHops)) {
+            if (Math.abs(product - 1 - minProfit) < 1e-9) {
+                // too close to the bar to tell which side rounding puts it on
+                return;
+            }
+            if (product > 1 + minProfit && expected.size() < limit) {
+                expected.add(product);
+            }
+        }
+        List<int[]> cycles = new CycleEnumerator(rates).findCycles(limit, maxHops, minProfit, pool);
+        assertEquals(expected.size(), cycles.size());
+        for (int i = 0; i < cycles.size(); i++) {
+            int[] cycle = cycles.get(i);
+            assertTrue(BruteForce.isSimpleCycle(rates, cycle));
+            assertTrue(cycle.length <= maxHops);
+            assertEquals(expected.get(i), BruteForce.product(rates, cycle), 1e-9);
+        }
+    }
+}
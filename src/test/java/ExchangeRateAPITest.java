@@ -0,0 +1,151 @@
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the snapshots ExchangeRateAPI.fetchSnapshotAsync assembles from the rows served by a StandInRateServer, the
+ * order it requests rows in, and that one failed request fails the whole fetch.
+ */
+public class ExchangeRateAPITest {
+    private static final List<String> SERVED = List.of("USD", "EUR", "JPY", "GBP", "AUD", "ZAR", "XYZ", "AAA");
+
+    private static String apiUrl;
+    private static StandInRateServer server;
+
+    @BeforeAll
+    public static void start() throws IOException {
+        apiUrl = ExchangeRateAPI.getBaseUrl();
+        server = new StandInRateServer(StandInRateServer.syntheticRates(SERVED, 0.01, 7), 0);
+        ExchangeRateAPI.configureBaseUrl(server.getBaseUrl());
+        // these tests are about fetching, so the budget never makes them wait
+        ExchangeRateAPI.configureRequestBudget(Long.MAX_VALUE, 1_000_000);
+    }
+
+    @AfterEach
+    public void reset() {
+        server.setRates(StandInRateServer.syntheticRates(SERVED, 0.01, 7));
+        server.setLatency(0, 0);
+        server.setUnavailableCurrencies(List.of());
+    }
+
+    @AfterAll
+    public static void stop() {
+        server.close();
+        ExchangeRateAPI.configureBaseUrl(apiUrl);
+        ExchangeRateAPI.configureRequestBudget(ExchangeRateAPI.DEFAULT_MONTHLY_QUOTA,
+                ExchangeRateAPI.DEFAULT_REQUESTS_PER_MINUTE);
+    }
+
+    @Test
+    public void mergesRowsFetchedConcurrently() {
+        RateSnapshot served = StandInRateServer.syntheticRates(SERVED, 0.01, 8);
+        server.setRates(served);
+        // rows complete out of order, so workers take turns filling them in
+        server.setLatency(1, 20);
+        List<String> currencies = List.of("AAA", "GBP", "USD", "XYZ", "EUR", "GBP", "ZAR");
+        for (int maxConcurrentRequests : new int[]{1, 3, 8, 100}) {
+            long requests = server.getRequestCount();
+            RateSnapshot fetched = ExchangeRateAPI.fetchSnapshotAsync(currencies, maxConcurrentRequests).join();
+            assertEquals(6, server.getRequestCount() - requests);
+            assertEquals(List.of("AAA", "GBP", "USD", "XYZ", "EUR", "ZAR"), currencies(fetched));
+            assertMatches(served, fetched);
+        }
+    }
+
+    @Test
+    public void fetchesRatesToUSDWithoutUSDRow() {
+        // USD is not a base, so its rates come from the USD column of every row
+        List<String> served = List.of("EUR", "JPY", "CHF");
+        server.setRates(StandInRateServer.syntheticRates(served, 0.01, 9));
+        RateSnapshot fetched = ExchangeRateAPI.fetchSnapshotAsync(List.of("CHF", "EUR", "JPY"), 2).join();
+        assertEquals(List.of("CHF", "EUR", "JPY"), currencies(fetched));
+        RateSnapshot expected = StandInRateServer.syntheticRates(served, 0.01, 9);
+        assertMatches(expected, fetched);
+        for (int i = 0; i < fetched.size(); i++) {
+            assertEquals(expected.getRateToUSD(expected.indexOf(fetched.getCurrency(i))), fetched.getRateToUSD(i));
+        }
+    }
+
+    @Test
+    public void requestsMostImportantRowsFirst() {
+        // with one request in flight, a fetch stops at the first failed row, so the requests made count its rank
+        List<String> currencies = List.of("ZAR", "XYZ", "AAA", "GBP", "EUR", "USD", "JPY", "AUD");
+        List<String> ranked = List.of("USD", "EUR", "JPY", "GBP", "AUD", "ZAR", "AAA", "XYZ");
+        assertEquals(ranked, ExchangeRateAPI.rankByImportance(currencies));
+        for (int rank = 0; rank < ranked.size(); rank++) {
+            server.setUnavailableCurrencies(List.of(ranked.get(rank)));
+            long requests = server.getRequestCount();
+            assertFetchFails(currencies, 1);
+            assertEquals(rank + 1, server.getRequestCount() - requests, ranked.get(rank));
+        }
+    }
+
+    @Test
+    public void failsWhenOneRequestFails() {
+        List<String> currencies = new ArrayList<>(SERVED);
+        server.setLatency(0, 10);
+        server.setUnavailableCurrencies(List.of("GBP"));
+        for (int maxConcurrentRequests : new int[]{1, 3, 8}) {
+            CompletionException e = assertFetchFails(currencies, maxConcurrentRequests);
+            assertTrue(e.getCause().getMessage().contains("404"), e.getCause().getMessage());
+        }
+
+        // a failed fetch leaves nothing behind, so the next one is whole
+        server.setUnavailableCurrencies(List.of());
+        assertMatches(StandInRateServer.syntheticRates(SERVED, 0.01, 7),
+                ExchangeRateAPI.fetchSnapshotAsync(currencies, 3).join());
+    }
+
+    @Test
+    public void failsOnRowMissingRates() {
+        // a row that has no rate for one of the currencies cannot be filled in
+        server.setRates(StandInRateServer.syntheticRates(List.of("USD", "EUR"), 0.01, 10));
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> ExchangeRateAPI.fetchSnapshotAsync(List.of("USD", "EUR", "JPY"), 1).join());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals("no conversion rate for JPY", e.getCause().getMessage());
+        assertThrows(IllegalArgumentException.class, () -> ExchangeRateAPI.fetchSnapshotAsync(SERVED, 0));
+    }
+
+    private static CompletionException assertFetchFails(List<String> currencies, int maxConcurrentRequests) {
+        CompletionException e = assertThrows(CompletionException.class, () -> ExchangeRateAPI
+                .fetchSnapshotAsync(currencies, maxConcurrentRequests).orTimeout(30, TimeUnit.SECONDS).join());
+        assertInstanceOf(IOException.class, e.getCause());
+        return e;
+    }
+
+    /**
+     * Asserts that every rate between two different currencies of fetched is the rate served for them
+     */
+    private static void assertMatches(RateSnapshot served, RateSnapshot fetched) {
+        for (int base = 0; base < fetched.size(); base++) {
+            int servedBase = served.indexOf(fetched.getCurrency(base));
+            for (int quote = 0; quote < fetched.size(); quote++) {
+                if (quote != base) {
+                    int servedQuote = served.indexOf(fetched.getCurrency(quote));
+                    assertEquals(served.getRate(servedBase, servedQuote), fetched.getRate(base, quote));
+                }
+            }
+        }
+    }
+
+    private static List<String> currencies(RateSnapshot rates) {
+        List<String> currencies = new ArrayList<>();
+        for (int i = 0; i < rates.size(); i++) {
+            currencies.add(rates.getCurrency(i));
+        }
+        return currencies;
+    }
+}
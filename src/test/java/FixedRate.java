@@ -0,0 +1,20 @@
+/**
+ * <b>FixedRate</b> is a GetRateListener with a fixed rate, whose quote currency is worth one USD.
+ */
+class FixedRate implements GetRateListener {
+    private final double rate;
+
+    FixedRate(double rate) {
+        this.rate = rate;
+    }
+
+    @Override
+    public double getRate() {
+        return rate;
+    }
+
+    @Override
+    public double getRateToUSD() {
+        return 1;
+    }
+}
@@ -0,0 +1,221 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks IncrementalArbitrageDetector against every simple cycle of small random webs, after every update of a random
+ * sequence of ticks, including ticks that add rates and currencies the detector did not start with.
+ */
+public class IncrementalArbitrageDetectorTest {
+
+    @Test
+    public void startingOpportunitiesMatchBruteForce() {
+        Random random = new Random(11);
+        for (int trial = 0; trial < 300; trial++) {
+            RateSnapshot rates = BruteForce.randomRates(random, 2 + random.nextInt(6), 0.97, 1.03, 0.3);
+            double best = BruteForce.bestCycleProduct(rates);
+            if (Math.abs(best - 1) < 1e-9) {
+                continue;
+            }
+            List<Path<String>> opportunities = new IncrementalArbitrageDetector(rates).getOpportunities();
+            assertEquals(best > 1, !opportunities.isEmpty());
+            for (Path<String> cycle : opportunities) {
+                assertProfitableCycle(rates, toMatrix(rates), cycle);
+            }
+        }
+    }
+
+    @Test
+    public void opportunitiesMatchBruteForceAfterEveryTick() {
+        Random random = new Random(12);
+        int checked = 0;
+        int withArbitrage = 0;
+        for (int trial = 0; trial < 40; trial++) {
+            int size = 3 + random.nextInt(4);
+            RateSnapshot start = BruteForce.randomRates(random, size, 0.985, 1.005, 0.2);
+            double[][] matrix = toMatrix(start);
+            IncrementalArbitrageDetector detector = new IncrementalArbitrageDetector(start);
+            for (int tick = 0; tick < 200; tick++) {
+                int base = random.nextInt(size);
+                int quote = random.nextInt(size);
+                if (!start.hasRate(base, quote)) {
+                    continue;
+                }
+                double fair = start.getRateToUSD(base) / start.getRateToUSD(quote);
+                matrix[base][quote] = fair * (0.985 + random.nextDouble() * 0.02);
+                List<Path<String>> found = detector.updateRate(start.getCurrency(base), start.getCurrency(quote),
+                        matrix[base][quote]);
+                for (Path<String> cycle : found) {
+                    assertProfitableCycle(start, matrix, cycle);
+                }
+
+                RateSnapshot current = RateSnapshot.of(BruteForce.currencies(size), matrix, ratesToUSD(start));
+                double best = BruteForce.bestCycleProduct(current);
+                if (Math.abs(best - 1) < 1e-9) {
+                    continue;
+                }
+                List<Path<String>> opportunities = detector.getOpportunities();
+                assertEquals(best > 1, !opportunities.isEmpty());
+                for (Path<String> cycle : opportunities) {
+                    assertProfitableCycle(start, matrix, cycle);
+                }
+                checked++;
+                if (best > 1) {
+                    withArbitrage++;
+                }
+            }
+        }
+        assertTrue(withArbitrage > checked / 10 && withArbitrage < checked * 9 / 10);
+    }
+
+    @Test
+    public void addedRatesMatchBruteForce() {
+        Random random = new Random(14);
+        int checked = 0;
+        for (int trial = 0; trial < 40; trial++) {
+            int size = 3 + random.nextInt(4);
+            RateSnapshot all = BruteForce.randomRates(random, size, 0.985, 1.005, 0.2);
+            List<int[]> edges = new ArrayList<>();
+            for (int base = 0; base < size; base++) {
+                for (int quote = 0; quote < size; quote++) {
+                    if (all.hasRate(base, quote)) {
+                        edges.add(new int[]{base, quote});
+                    }
+                }
+            }
+            Collections.shuffle(edges, random);
+
+            // start with one rate, then add the others one at a time, then move the rates that are in
+            double[][] matrix = new double[size][size];
+            int[] first = edges.get(0);
+            matrix[first[0]][first[1]] = all.getRate(first[0], first[1]);
+            IncrementalArbitrageDetector detector =
+                    new IncrementalArbitrageDetector(RateSnapshot.of(BruteForce.currencies(size), matrix,
+                            ratesToUSD(all)));
+            for (int tick = 1; tick < edges.size() + 100; tick++) {
+                int[] edge = edges.get(tick < edges.size() ? tick : random.nextInt(edges.size()));
+                int base = edge[0];
+                int quote = edge[1];
+                double fair = all.getRateToUSD(base) / all.getRateToUSD(quote);
+                matrix[base][quote] = fair * (0.985 + random.nextDouble() * 0.02);
+                List<Path<String>> found = detector.addRate(all.getCurrency(base), all.getCurrency(quote),
+                        matrix[base][quote]);
+                for (Path<String> cycle : found) {
+                    assertProfitableCycle(all, matrix, cycle);
+                }
+
+                double best = BruteForce.bestCycleProduct(
+                        RateSnapshot.of(BruteForce.currencies(size), matrix, ratesToUSD(all)));
+                if (Math.abs(best - 1) < 1e-9) {
+                    continue;
+                }
+                List<Path<String>> opportunities = detector.getOpportunities();
+                assertEquals(best > 1, !opportunities.isEmpty());
+                for (Path<String> cycle : opportunities) {
+                    assertProfitableCycle(all, matrix, cycle);
+                }
+                checked++;
+            }
+        }
+        assertTrue(checked > 1000);
+    }
+
+    @Test
+    public void addsCurrenciesItHasNotSeen() {
+        double[][] rates = {{0, 0.9}, {1.1, 0}};
+        IncrementalArbitrageDetector detector =
+                new IncrementalArbitrageDetector(RateSnapshot.of(List.of("USD", "EUR"), rates, new double[]{1, 1.1}));
+        assertTrue(detector.addRate("EUR", "GBP", 0.85).isEmpty());
+        assertTrue(detector.addRate("GBP", "CHF", 1.1).isEmpty());
+        // CHF -> USD closes USD -> EUR -> GBP -> CHF -> USD at 0.9 * 0.85 * 1.1 * 1.2 = 1.0098
+        List<Path<String>> found = detector.addRate("CHF", "USD", 1.2);
+        assertEquals(1, found.size());
+        assertEquals(1.0098, found.get(0).getCost(), 1e-9);
+        assertEquals(found.size(), detector.getOpportunities().size());
+        assertTrue(detector.updateRate("CHF", "USD", 1.1).isEmpty());
+        assertTrue(detector.getOpportunities().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> detector.addRate("USD", "USD", 1));
+        assertThrows(IllegalArgumentException.class, () -> detector.addRate("USD", "JPY", Double.NaN));
+    }
+
+    @Test
+    public void tickThatClosesCycleReportsIt() {
+        Random random = new Random(13);
+        int size = 50;
+        RateSnapshot start = BruteForce.randomRates(random, size, 0.99, 0.999, 0);
+        IncrementalArbitrageDetector detector = new IncrementalArbitrageDetector(start);
+        assertTrue(detector.getOpportunities().isEmpty());
+
+        // 30 -> 10 at twice the fair rate beats the spread of every cycle through it
+        double fair = start.getRateToUSD(30) / start.getRateToUSD(10);
+        List<Path<String>> found = detector.updateRate(start.getCurrency(30), start.getCurrency(10), fair * 2);
+        assertFalse(found.isEmpty());
+        double[][] matrix = toMatrix(start);
+        matrix[30][10] = fair * 2;
+        for (Path<String> cycle : found) {
+            assertProfitableCycle(start, matrix, cycle);
+        }
+
+        // setting the rate back removes the opportunity again
+        assertTrue(detector.updateRate(start.getCurrency(30), start.getCurrency(10), start.getRate(30, 10))
+                .isEmpty());
+        assertTrue(detector.getOpportunities().isEmpty());
+    }
+
+    @Test
+    public void rejectsUnknownRates() {
+        double[][] rates = {{0, 2}, {0, 0}};
+        RateSnapshot snapshot = RateSnapshot.of(BruteForce.currencies(2), rates, new double[]{1, 0.5});
+        IncrementalArbitrageDetector detector = new IncrementalArbitrageDetector(snapshot);
+        assertThrows(IllegalArgumentException.class, () -> detector.updateRate("AAB", "AAA", 0.5));
+        assertThrows(IllegalArgumentException.class, () -> detector.updateRate("AAA", "XYZ", 0.5));
+        assertThrows(IllegalArgumentException.class, () -> detector.updateRate("AAA", "AAB", 0));
+    }
+
+    /**
+     * Asserts that cycle visits each currency once, returns to its start, and makes money at the rates in matrix
+     */
+    private static void assertProfitableCycle(RateSnapshot currencies, double[][] matrix, Path<String> cycle) {
+        assertEquals(cycle.getStart(), cycle.getEnd());
+        Set<String> visited = new HashSet<>();
+        double product = 1;
+        for (Path<String>.Segment segment : cycle) {
+            assertTrue(visited.add(segment.getStart()));
+            int base = currencies.indexOf(segment.getStart());
+            int quote = currencies.indexOf(segment.getEnd());
+            assertTrue(matrix[base][quote] > 0);
+            assertEquals(matrix[base][quote], segment.getRate());
+            product *= matrix[base][quote];
+        }
+        assertTrue(visited.size() >= 2);
+        assertTrue(product > 1);
+    }
+
+    private static double[][] toMatrix(RateSnapshot rates) {
+        double[][] matrix = new double[rates.size()][rates.size()];
+        for (int base = 0; base < rates.size(); base++) {
+            for (int quote = 0; quote < rates.size(); quote++) {
+                matrix[base][quote] = rates.getRate(base, quote);
+            }
+        }
+        return matrix;
+    }
+
+    private static double[] ratesToUSD(RateSnapshot rates) {
+        double[] ratesToUSD = new double[rates.size()];
+        for (int i = 0; i < rates.size(); i++) {
+            ratesToUSD[i] = rates.getRateToUSD(i);
+        }
+        return ratesToUSD;
+    }
+}
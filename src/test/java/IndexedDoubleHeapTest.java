@@ -0,0 +1,102 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks IndexedDoubleHeap against a java.util.PriorityQueue over random sequences of inserts, priority decreases,
+ * removals and clears.
+ */
+public class IndexedDoubleHeapTest {
+
+    @Test
+    public void matchesPriorityQueue() {
+        Random random = new Random(6);
+        for (int trial = 0; trial < 200; trial++) {
+            int capacity = 1 + random.nextInt(50);
+            // few distinct priorities make many ties
+            boolean ties = random.nextBoolean();
+            IndexedDoubleHeap heap = new IndexedDoubleHeap(capacity);
+            PriorityQueue<double[]> queue = new PriorityQueue<>((entry1, entry2) -> Double.compare(entry1[0],
+                    entry2[0]));
+            Map<Integer, double[]> entries = new HashMap<>();
+            for (int step = 0; step < 500; step++) {
+                int operation = random.nextInt(20);
+                if (operation < 11) {
+                    int id = random.nextInt(capacity);
+                    double priority = ties ? random.nextInt(5) : random.nextDouble() * 100 - 50;
+                    double[] entry = entries.get(id);
+                    boolean changes = entry == null || priority < entry[0];
+                    assertEquals(changes, heap.offer(id, priority));
+                    if (changes) {
+                        if (entry != null) {
+                            queue.remove(entry);
+                        }
+                        entry = new double[]{priority, id};
+                        entries.put(id, entry);
+                        queue.add(entry);
+                    }
+                } else if (operation < 19) {
+                    if (queue.isEmpty()) {
+                        assertThrows(NoSuchElementException.class, heap::remove);
+                        continue;
+                    }
+                    int peeked = heap.peek();
+                    int id = heap.remove();
+                    assertEquals(peeked, id);
+                    // among tied priorities either id may come first, so compare the priority and remove that id
+                    double[] entry = entries.remove(id);
+                    assertEquals(queue.peek()[0], entry[0]);
+                    assertTrue(queue.remove(entry));
+                    assertFalse(heap.contains(id));
+                    assertThrows(NoSuchElementException.class, () -> heap.getPriority(id));
+                } else {
+                    heap.clear();
+                    queue.clear();
+                    entries.clear();
+                }
+
+                assertEquals(queue.size(), heap.size());
+                assertEquals(queue.isEmpty(), heap.isEmpty());
+                for (int id = 0; id < capacity; id++) {
+                    double[] entry = entries.get(id);
+                    assertEquals(entry != null, heap.contains(id));
+                    if (entry != null) {
+                        assertEquals(entry[0], heap.getPriority(id));
+                    }
+                }
+            }
+
+            // draining gives the priorities in order
+            while (!queue.isEmpty()) {
+                double[] entry = entries.remove(heap.remove());
+                assertEquals(queue.peek()[0], entry[0]);
+                queue.remove(entry);
+            }
+            assertTrue(heap.isEmpty());
+            assertThrows(NoSuchElementException.class, heap::peek);
+        }
+    }
+
+    @Test
+    public void keepsPriorityThatIsNotLower() {
+        IndexedDoubleHeap heap = new IndexedDoubleHeap(3);
+        assertTrue(heap.offer(2, 1.5));
+        assertFalse(heap.offer(2, 1.5));
+        assertFalse(heap.offer(2, 7));
+        assertEquals(1.5, heap.getPriority(2));
+        assertTrue(heap.offer(0, Double.NEGATIVE_INFINITY));
+        assertTrue(heap.offer(1, 1));
+        assertEquals(0, heap.remove());
+        assertEquals(1, heap.remove());
+        assertEquals(2, heap.remove());
+    }
+}
@@ -0,0 +1,129 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that PathJsonWriter writes exactly what Gson writes for the JsonObject of a path, for currencies that need
+ * escaping, non-ASCII currencies and costs that are not finite.
+ */
+public class PathJsonWriterTest {
+
+    /**
+     * Gson as JsonObject#toString configures it, which leaves HTML characters unescaped
+     */
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    private static final String[] SPECIAL_CURRENCIES = {
+            "USD", "", "\"", "\\", "a\"b\\c", "\t\b\n\r\f", "\u0000\u0001\u001f", "\u007f", "<>&='",
+            "\u2028\u2029", "\u00e9", "\u65e5\u672c\u5186", "\uD83D\uDCB6", "\uD83D", "x\uDCB6y",
+    };
+
+    @Test
+    public void matchesGsonForSpecialCharacters() throws IOException {
+        PathJsonWriter writer = new PathJsonWriter();
+        for (String start : SPECIAL_CURRENCIES) {
+            for (String end : SPECIAL_CURRENCIES) {
+                assertMatchesGson(new Path<>(start, 1.0).extend(end, 1.01, 0.99), writer);
+            }
+        }
+    }
+
+    @Test
+    public void matchesGsonForRandomCurrencies() throws IOException {
+        Random random = new Random(22);
+        PathJsonWriter writer = new PathJsonWriter();
+        for (int trial = 0; trial < 1000; trial++) {
+            Path<String> path = new Path<>(randomString(random), 0.5 + random.nextDouble());
+            for (int hops = random.nextInt(5); hops > 0; hops--) {
+                path = path.extend(randomString(random), 0.5 + random.nextDouble(), 0.5 + random.nextDouble());
+            }
+            assertMatchesGson(path, writer);
+        }
+    }
+
+    @Test
+    public void matchesGsonForSpecialCosts() throws IOException {
+        PathJsonWriter writer = new PathJsonWriter();
+        double[] rates = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0, Double.MIN_VALUE,
+                Double.MAX_VALUE, 1e-300, 1.0000000001, 123456789.125};
+        List<Path<Integer>> paths = new ArrayList<>();
+        for (double rate : rates) {
+            Path<Integer> path = new Path<>(1, 1.0).extend(2, rate, 1.0);
+            assertMatchesGson(path, writer);
+            paths.add(path);
+        }
+        assertMatchesGson(paths, writer);
+        assertMatchesGson(new ArrayList<>(), writer);
+        assertMatchesGson(new Path<>(7, 1.0), writer);
+    }
+
+    private static void assertMatchesGson(Path<?> path, PathJsonWriter writer) throws IOException {
+        String expected = GSON.toJson(toJsonObject(path));
+        assertEquals(expected, toJsonObject(path).toString());
+        assertEquals(expected, path.toJSON());
+        assertEquals(expected, PathJsonWriter.append(path, new StringBuilder()).toString());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(path, out);
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+        assertMatchesGson(List.of(path, path), writer);
+    }
+
+    private static void assertMatchesGson(List<? extends Path<?>> paths, PathJsonWriter writer) throws IOException {
+        JsonArray array = new JsonArray();
+        for (Path<?> path : paths) {
+            array.add(toJsonObject(path));
+        }
+        String expected = GSON.toJson(array);
+        assertEquals(expected, PathJsonWriter.appendAll(paths, new StringBuilder()).toString());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeAll(paths, out);
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+    /**
+     * Builds the JSON of a path with Gson's tree, the way Path#toJSON used to
+     */
+    private static JsonObject toJsonObject(Path<?> path) {
+        JsonObject json = new JsonObject();
+        json.addProperty("percent_profit", path.getCost() - 1);
+        JsonArray nodes = new JsonArray();
+        nodes.add(path.getStart().toString());
+        for (Path<?>.Segment segment : path) {
+            nodes.add(segment.getEnd().toString());
+        }
+        json.add("path", nodes);
+        return json;
+    }
+
+    /**
+     * Returns up to 8 random UTF-16 chars, often ASCII and sometimes control characters or lone surrogates
+     */
+    private static String randomString(Random random) {
+        StringBuilder builder = new StringBuilder();
+        for (int length = random.nextInt(9); length > 0; length--) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    builder.append((char) random.nextInt(0x20));
+                    break;
+                case 1:
+                    builder.append((char) random.nextInt(0x10000));
+                    break;
+                default:
+                    builder.append((char) (0x20 + random.nextInt(0x60)));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,141 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks that rates appended to a RateJournal replay unchanged and in order, across segments, reopened journals and
+ * segments left behind by a crash.
+ */
+public class RateJournalTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void replaysAppendedRates() throws IOException {
+        List<String> expected = new ArrayList<>();
+        try (RateJournal journal = new RateJournal(directory)) {
+            append(journal, expected, "USD", "EUR", 0.9, 1);
+            append(journal, expected, "EUR", "GBP", Double.MIN_VALUE, Long.MAX_VALUE);
+            append(journal, expected, "ZZZ", "AAA", 12345.678, -1);
+        }
+        assertEquals(expected, replay());
+        assertEquals(1, segments());
+    }
+
+    @Test
+    public void startsNewSegmentWhenFull() throws IOException {
+        List<String> expected = new ArrayList<>();
+        try (RateJournal journal = new RateJournal(directory, 4)) {
+            for (int i = 0; i < 10; i++) {
+                append(journal, expected, "USD", "EUR", 1 + i * 0.01, i);
+            }
+        }
+        assertEquals(3, segments());
+        assertEquals(expected, replay());
+    }
+
+    @Test
+    public void appendsAfterReopening() throws IOException {
+        List<String> expected = new ArrayList<>();
+        try (RateJournal journal = new RateJournal(directory, 4)) {
+            for (int i = 0; i < 6; i++) {
+                append(journal, expected, "USD", "JPY", 100 + i, i);
+            }
+        }
+        try (RateJournal journal = new RateJournal(directory, 4)) {
+            for (int i = 6; i < 9; i++) {
+                append(journal, expected, "JPY", "USD", 0.01 * i, i);
+            }
+        }
+        // the second segment held 2 records, so the reopened journal filled it before starting a third
+        assertEquals(3, segments());
+        assertEquals(expected, replay());
+    }
+
+    @Test
+    public void recoversFromSegmentsLeftByCrash() throws IOException {
+        List<String> expected = new ArrayList<>();
+        try (RateJournal journal = new RateJournal(directory, 4)) {
+            for (int i = 0; i < 5; i++) {
+                append(journal, expected, "USD", "EUR", 0.9, i);
+            }
+        }
+        // a crash right after creating the next segment leaves it empty
+        try (RandomAccessFile file = new RandomAccessFile(segment(2), "rw")) {
+            file.setLength(0);
+        }
+        assertEquals(expected, replay());
+        try (RateJournal journal = new RateJournal(directory, 4)) {
+            append(journal, expected, "EUR", "USD", 1.1, 5);
+        }
+        assertEquals(expected, replay());
+
+        // a crash after sizing the next segment but before writing its header leaves it all zeros
+        try (RandomAccessFile file = new RandomAccessFile(segment(3), "rw")) {
+            file.setLength(RateJournal.HEADER_SIZE + 4 * RateJournal.RECORD_SIZE);
+        }
+        assertEquals(expected, replay());
+        try (RateJournal journal = new RateJournal(directory, 4)) {
+            append(journal, expected, "GBP", "USD", 1.3, 6);
+        }
+        assertEquals(expected, replay());
+    }
+
+    @Test
+    public void rejectsTruncatedAndCorruptSegments() throws IOException {
+        try (RateJournal journal = new RateJournal(directory, 4)) {
+            for (int i = 0; i < 3; i++) {
+                journal.onRate("USD", "EUR", 0.9, i);
+            }
+        }
+        File segment = segment(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // the count says 3 records, but only 2 are left
+            file.setLength(RateJournal.HEADER_SIZE + 2 * RateJournal.RECORD_SIZE);
+        }
+        assertThrows(IOException.class, this::replay);
+
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(RateJournal.HEADER_SIZE + 4 * RateJournal.RECORD_SIZE);
+            // the quote currency of the first record is not a packed code
+            file.seek(RateJournal.HEADER_SIZE + 12);
+            file.writeInt(-1);
+        }
+        assertThrows(IOException.class, this::replay);
+    }
+
+    private static void append(RateJournal journal, List<String> expected, String base, String quote, double rate,
+                               long timestamp) {
+        journal.onRate(base, quote, rate, timestamp);
+        expected.add(record(base, quote, rate, timestamp));
+    }
+
+    private static String record(String base, String quote, double rate, long timestamp) {
+        return base + "/" + quote + " " + rate + " @" + timestamp;
+    }
+
+    private List<String> replay() throws IOException {
+        List<String> records = new ArrayList<>();
+        long replayed = RateJournal.replay(directory,
+                (base, quote, rate, timestamp) -> records.add(record(base, quote, rate, timestamp)));
+        assertEquals(records.size(), replayed);
+        return records;
+    }
+
+    private int segments() {
+        return directory.list((dir, name) -> name.endsWith(".journal")).length;
+    }
+
+    private File segment(int number) {
+        return new File(directory, String.format("rates-%010d.journal", number));
+    }
+}
@@ -0,0 +1,110 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that RateResponseParser reads exchangerate-api.com responses around fields it does not know, and reports
+ * error payloads, missing fields and values that are not numbers with an IOException.
+ */
+public class RateResponseParserTest {
+
+    private static final String LATEST = "{\"result\":\"success\",\"documentation\":\"https://www.exchangerate-api.com"
+            + "/docs\",\"time_last_update_unix\":1585267200,\"nested\":{\"conversion_rates\":{\"USD\":2}},"
+            + "\"list\":[1,{\"a\":null},\"x\"],\"base_code\":\"USD\",\"conversion_rates\":{\"USD\":1,"
+            + "\"AED\":3.6725,\"EUR\":0.9013,\"JPY\":1.5E2,\"GBP\":\"0.7679\"},\"after\":{\"b\":[true]}}";
+
+    private static final String ERROR = "{\"result\":\"error\",\"error-type\":\"invalid-key\"}";
+
+    @Test
+    public void readsRatesAroundUnknownFields() throws IOException {
+        CurrencyRegistry ids = new CurrencyRegistry();
+        for (String code : List.of("EUR", "USD", "GBP", "JPY", "CHF")) {
+            ids.intern(code);
+        }
+        double[] rates = {-1, -1, -1, -1, -1};
+        assertEquals(4, RateResponseParser.readConversionRates(new StringReader(LATEST), ids, rates));
+        assertArrayEquals(new double[]{0.9013, 1, 0.7679, 150, -1}, rates);
+
+        // ids beyond the array are skipped
+        double[] first = new double[2];
+        assertEquals(2, RateResponseParser.readConversionRates(new StringReader(LATEST), ids, first));
+        assertArrayEquals(new double[]{0.9013, 1}, first);
+
+        assertEquals(Set.of("USD", "AED", "EUR", "JPY", "GBP"),
+                RateResponseParser.readCurrencyCodes(new StringReader(LATEST)));
+        assertEquals(List.of("USD", "AED", "EUR", "JPY", "GBP"),
+                List.copyOf(RateResponseParser.readCurrencyCodes(new StringReader(LATEST))));
+        assertEquals(0.8412, RateResponseParser.readConversionRate(new StringReader(
+                "{\"result\":\"success\",\"extra\":{\"conversion_rate\":5},\"conversion_rate\":0.8412}")));
+        assertEquals(1234, RateResponseParser.readRequestsRemaining(new StringReader(
+                "{\"result\":\"success\",\"plan_quota\":1500,\"refresh_day_of_month\":17,"
+                        + "\"requests_remaining\":1234}")));
+    }
+
+    @Test
+    public void reportsErrorPayload() {
+        CurrencyRegistry ids = new CurrencyRegistry();
+        IOException e = assertThrows(IOException.class,
+                () -> RateResponseParser.readConversionRates(new StringReader(ERROR), ids, new double[0]));
+        assertTrue(e.getMessage().contains("conversion_rates"));
+        assertTrue(e.getMessage().contains("invalid-key"));
+        e = assertThrows(IOException.class, () -> RateResponseParser.readConversionRate(new StringReader(ERROR)));
+        assertTrue(e.getMessage().contains("invalid-key"));
+        e = assertThrows(IOException.class, () -> RateResponseParser.readRequestsRemaining(new StringReader(ERROR)));
+        assertTrue(e.getMessage().contains("invalid-key"));
+
+        // an error-type that is not a string is skipped like any other field
+        e = assertThrows(IOException.class, () -> RateResponseParser.readCurrencyCodes(
+                new StringReader("{\"result\":\"error\",\"error-type\":{\"code\":401}}")));
+        assertEquals("no conversion_rates in response", e.getMessage());
+    }
+
+    @Test
+    public void rejectsMissingRates() {
+        String missing = "{\"result\":\"success\",\"base_code\":\"USD\",\"rates\":{\"EUR\":0.9}}";
+        assertThrows(IOException.class, () -> RateResponseParser.readCurrencyCodes(new StringReader(missing)));
+        assertThrows(IOException.class, () -> RateResponseParser.readConversionRates(new StringReader(missing),
+                new CurrencyRegistry(), new double[1]));
+        assertThrows(IOException.class, () -> RateResponseParser.readConversionRate(new StringReader("{}")));
+        assertThrows(IOException.class, () -> RateResponseParser.readConversionRate(new StringReader("")));
+        assertThrows(IOException.class, () -> RateResponseParser.readConversionRate(new StringReader("[1]")));
+        assertThrows(IOException.class, () -> RateResponseParser.readConversionRate(
+                new StringReader("{\"conversion_rate\"")));
+        assertThrows(IOException.class, () -> RateResponseParser.readCurrencyCodes(
+                new StringReader("{\"conversion_rates\":[\"USD\"]}")));
+        assertThrows(IOException.class, () -> RateResponseParser.readConversionRates(
+                new StringReader("{\"conversion_rates\":null}"), new CurrencyRegistry(), new double[1]));
+    }
+
+    @Test
+    public void rejectsValuesThatAreNotNumbers() throws IOException {
+        CurrencyRegistry ids = new CurrencyRegistry();
+        ids.intern("EUR");
+        for (String value : List.of("\"abc\"", "\"\"", "null", "true", "{}", "[1]", "NaN", "\"NaN\"", "1e999",
+                "\"-Infinity\"")) {
+            assertThrows(IOException.class, () -> RateResponseParser.readConversionRate(
+                    new StringReader("{\"conversion_rate\":" + value + "}")), value);
+            assertThrows(IOException.class, () -> RateResponseParser.readConversionRates(
+                    new StringReader("{\"conversion_rates\":{\"USD\":1,\"EUR\":" + value + "}}"), ids,
+                    new double[1]), value);
+            assertThrows(IOException.class, () -> RateResponseParser.readRequestsRemaining(
+                    new StringReader("{\"requests_remaining\":" + value + "}")), value);
+        }
+        assertThrows(IOException.class, () -> RateResponseParser.readRequestsRemaining(
+                new StringReader("{\"requests_remaining\":1.5}")));
+
+        // a currency that is not wanted is skipped without being read as a number
+        double[] rates = new double[1];
+        assertEquals(1, RateResponseParser.readConversionRates(
+                new StringReader("{\"conversion_rates\":{\"XYZ\":\"abc\",\"EUR\":0.9}}"), ids, rates));
+        assertEquals(0.9, rates[0]);
+    }
+}
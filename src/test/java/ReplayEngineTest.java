@@ -0,0 +1,96 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the ReplayStats and TickListener results of replaying a few ticks with one known cycle, from a CSV file and
+ * from a RateJournal.
+ */
+public class ReplayEngineTest {
+
+    /**
+     * Ticks that quote USD, EUR and GBP both ways, a little worse than fair, and then make USD -> EUR -> GBP -> USD
+     * pay 0.89 * 0.84 * 1.35 = 1.00926 for one tick.
+     */
+    private static final Object[][] TICKS = {
+            {"USD", "EUR", 0.89},
+            {"EUR", "USD", 1.1},
+            {"EUR", "GBP", 0.84},
+            {"GBP", "EUR", 1.16},
+            {"GBP", "USD", 1.3},
+            {"USD", "GBP", 0.74},
+            {"GBP", "USD", 1.35},
+            {"GBP", "USD", 1.3},
+    };
+    private static final int CYCLE_TICK = 6;
+    private static final double CYCLE_PROFIT = 0.89 * 0.84 * 1.35 - 1;
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void replaysCsvWithKnownCycle() throws IOException {
+        File file = new File(directory, "ticks.csv");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("timestamp,base,quote,rate\n# a comment\n\n");
+            for (int i = 0; i < TICKS.length; i++) {
+                writer.write(i + "," + TICKS[i][0] + "," + TICKS[i][1] + "," + TICKS[i][2] + "\n");
+            }
+        }
+        ReplayEngine engine = new ReplayEngine(new CurrencyWeb(), ReplayEngine.MAX_SPEED);
+        List<List<Path<String>>> results = listen(engine);
+        assertKnownCycle(engine.replayCsv(file), results);
+
+        // a second replay starts from a fresh detector, over a web that already has every rate
+        results.clear();
+        assertKnownCycle(engine.replayCsv(file), results);
+    }
+
+    @Test
+    public void replaysJournalWithKnownCycle() throws IOException {
+        try (RateJournal journal = new RateJournal(directory, 3)) {
+            for (int i = 0; i < TICKS.length; i++) {
+                journal.onRate((String) TICKS[i][0], (String) TICKS[i][1], (double) TICKS[i][2], i);
+            }
+        }
+        ReplayEngine engine = new ReplayEngine(new CurrencyWeb(), ReplayEngine.MAX_SPEED);
+        List<List<Path<String>>> results = listen(engine);
+        assertKnownCycle(engine.replayJournal(directory), results);
+    }
+
+    private static List<List<Path<String>>> listen(ReplayEngine engine) {
+        List<List<Path<String>>> results = new ArrayList<>();
+        engine.addTickListener((base, quote, rate, timestamp, opportunities, detectionNanos) -> {
+            assertEquals(TICKS[results.size()][0], base);
+            assertEquals(TICKS[results.size()][1], quote);
+            assertEquals(results.size(), timestamp);
+            assertTrue(detectionNanos >= 0);
+            results.add(opportunities);
+        });
+        return results;
+    }
+
+    private static void assertKnownCycle(ReplayStats stats, List<List<Path<String>>> results) {
+        assertEquals(TICKS.length, stats.getTicks());
+        assertEquals(1, stats.getTicksWithOpportunities());
+        assertEquals(1, stats.getOpportunities());
+        assertEquals(CYCLE_PROFIT, stats.getBestProfit(), 1e-9);
+
+        assertEquals(TICKS.length, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i == CYCLE_TICK ? 1 : 0, results.get(i).size());
+        }
+        Path<String> cycle = results.get(CYCLE_TICK).get(0);
+        assertEquals(cycle.getStart(), cycle.getEnd());
+        assertEquals(1 + CYCLE_PROFIT, cycle.getCost(), 1e-9);
+    }
+}
@@ -0,0 +1,116 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a RequestBudget counts requests against its monthly quota and per-minute limit on fake clocks, and that
+ * ExchangeRateAPI syncs its budget with the API and chooses the currencies it can afford.
+ */
+public class RequestBudgetTest {
+
+    @Test
+    public void spendsMonthlyQuota() throws InterruptedException {
+        RequestBudget budget = new RequestBudget(3, 100, () -> 0, () -> 0);
+        budget.acquire();
+        assertTrue(budget.acquireAsync().isDone());
+        budget.acquire();
+        assertEquals(0, budget.getRemainingMonthlyRequests());
+        assertThrows(IllegalStateException.class, budget::acquire);
+        CompletionException e = assertThrows(CompletionException.class, () -> budget.acquireAsync().join());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals(97, budget.getAvailableMinuteRequests());
+    }
+
+    @Test
+    public void refillsQuotaAtStartOfMonth() throws InterruptedException {
+        AtomicLong millis = new AtomicLong(Instant.parse("2026-01-31T23:59:59Z").toEpochMilli());
+        RequestBudget budget = new RequestBudget(2, 100, () -> 0, millis::get);
+        budget.acquire();
+        budget.acquire();
+        millis.addAndGet(999);
+        assertEquals(0, budget.getRemainingMonthlyRequests());
+        millis.incrementAndGet();
+        assertEquals(2, budget.getRemainingMonthlyRequests());
+
+        // the first request of a month spends from the new quota
+        budget.acquire();
+        millis.set(Instant.parse("2026-03-01T00:00:00Z").toEpochMilli());
+        budget.acquire();
+        assertEquals(1, budget.getRemainingMonthlyRequests());
+    }
+
+    @Test
+    public void clampsRemainingRequests() {
+        RequestBudget budget = new RequestBudget(10, 100, () -> 0, () -> 0);
+        budget.setRemainingMonthlyRequests(4);
+        assertEquals(4, budget.getRemainingMonthlyRequests());
+        budget.setRemainingMonthlyRequests(11);
+        assertEquals(10, budget.getRemainingMonthlyRequests());
+        budget.setRemainingMonthlyRequests(-1);
+        assertEquals(0, budget.getRemainingMonthlyRequests());
+    }
+
+    @Test
+    public void limitsRequestsPerMinute() throws InterruptedException {
+        AtomicLong nanos = new AtomicLong();
+        RequestBudget budget = new RequestBudget(1000, 60, nanos::get, () -> 0);
+        for (int i = 0; i < 60; i++) {
+            budget.acquire();
+        }
+        assertEquals(0, budget.getAvailableMinuteRequests());
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(30_500));
+        assertEquals(30, budget.getAvailableMinuteRequests());
+        nanos.addAndGet(TimeUnit.HOURS.toNanos(1));
+        assertEquals(60, budget.getAvailableMinuteRequests());
+        assertEquals(940, budget.getRemainingMonthlyRequests());
+    }
+
+    @Test
+    public void syncsWithApiAndSelectsAffordableCurrencies() throws IOException {
+        String apiUrl = ExchangeRateAPI.getBaseUrl();
+        try (StandInRateServer server = new StandInRateServer(
+                StandInRateServer.syntheticRates(List.of("USD", "EUR"), 0.01, 9), 0)) {
+            ExchangeRateAPI.configureBaseUrl(server.getBaseUrl());
+            ExchangeRateAPI.configureRequestBudget(100, 60);
+
+            server.setRequestsRemaining(42);
+            ExchangeRateAPI.syncRequestBudget();
+            assertEquals(42, ExchangeRateAPI.getRequestBudget().getRemainingMonthlyRequests());
+
+            List<String> currencies = List.of("ZAR", "XYZ", "USD", "AAA", "jpy", "EUR");
+            // 42 requests pay for 10 loads of 4 currencies, most traded first
+            assertEquals(List.of("USD", "EUR", "jpy", "ZAR"), ExchangeRateAPI.selectAffordableCurrencies(currencies,
+                    10));
+            assertEquals(List.of("USD", "EUR", "jpy", "ZAR", "AAA", "XYZ"),
+                    ExchangeRateAPI.selectAffordableCurrencies(currencies, 1));
+            assertEquals(List.of(), ExchangeRateAPI.selectAffordableCurrencies(currencies, 43));
+            assertThrows(IllegalArgumentException.class,
+                    () -> ExchangeRateAPI.selectAffordableCurrencies(currencies, 0));
+
+            // the API's count includes other clients, but never raises the budget above its quota
+            server.setRequestsRemaining(Long.MAX_VALUE);
+            ExchangeRateAPI.syncRequestBudget();
+            assertEquals(100, ExchangeRateAPI.getRequestBudget().getRemainingMonthlyRequests());
+
+            // a failed sync keeps the count
+            server.setErrorRate(1);
+            ExchangeRateAPI.getRequestBudget().setRemainingMonthlyRequests(7);
+            ExchangeRateAPI.syncRequestBudget();
+            assertEquals(7, ExchangeRateAPI.getRequestBudget().getRemainingMonthlyRequests());
+        } finally {
+            ExchangeRateAPI.configureBaseUrl(apiUrl);
+            ExchangeRateAPI.configureRequestBudget(ExchangeRateAPI.DEFAULT_MONTHLY_QUOTA,
+                    ExchangeRateAPI.DEFAULT_REQUESTS_PER_MINUTE);
+        }
+    }
+}
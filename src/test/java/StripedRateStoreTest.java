@@ -0,0 +1,149 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks StripedRateStore alone, and that readers never see part of a row write while writers store whole rows.
+ */
+public class StripedRateStoreTest {
+
+    @Test
+    public void storesRatesAndTheirInverses() {
+        StripedRateStore store = new StripedRateStore(4);
+        int usd = store.intern("USD");
+        int eur = store.intern("EUR");
+        assertEquals(usd, store.intern("USD"));
+        assertEquals("EUR", store.getCurrency(eur));
+        assertNull(store.getCurrency(3));
+
+        store.set(usd, eur, 0.8, 5);
+        assertEquals(0.8, store.getRate(usd, eur));
+        assertEquals(5, store.getTimestamp(usd, eur));
+        assertEquals(0, store.getRate(eur, usd));
+        assertEquals(1 / 0.8, store.getRateOrInverse(eur, usd));
+        assertEquals(1, store.getRateOrInverse(usd, usd));
+
+        // zeros in a row write keep the stored rates
+        int gbp = store.intern("GBP");
+        store.setRow(usd, new double[]{0, 0, 0.7}, 6);
+        assertEquals(0.8, store.getRate(usd, eur));
+        assertEquals(5, store.getTimestamp(usd, eur));
+        assertEquals(0.7, store.getRate(usd, gbp));
+        assertEquals(6, store.getTimestamp(usd, gbp));
+    }
+
+    @Test
+    public void internsAtMostCapacityCurrencies() throws InterruptedException {
+        int capacity = 50;
+        StripedRateStore store = new StripedRateStore(capacity);
+        List<String> currencies = BruteForce.currencies(200);
+        ConcurrentLinkedQueue<Integer> indices = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            int offset = thread;
+            threads.add(new Thread(() -> {
+                for (int i = offset; i < currencies.size(); i += 4) {
+                    try {
+                        indices.add(store.intern(currencies.get(i)));
+                    } catch (IllegalStateException e) {
+                        // the store is full
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(capacity, indices.size());
+        assertEquals(capacity, new HashSet<>(indices).size());
+        for (int index : indices) {
+            assertTrue(index >= 0 && index < capacity);
+            assertEquals(index, store.indexOf(store.getCurrency(index)));
+        }
+        assertThrows(IllegalStateException.class, () -> store.intern("XYZ"));
+    }
+
+    @Test
+    public void readersNeverSeePartOfARowWrite() throws InterruptedException {
+        int capacity = 64;
+        int rows = 4;
+        StripedRateStore store = new StripedRateStore(capacity);
+        for (String currency : BruteForce.currencies(capacity)) {
+            store.intern(currency);
+        }
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Thread> writers = new ArrayList<>();
+        for (int writer = 0; writer < 2; writer++) {
+            int id = writer;
+            writers.add(new Thread(() -> {
+                // every write sets the whole row to one value no other write uses
+                double[] row = new double[capacity];
+                for (int tick = 1; tick <= 100_000; tick++) {
+                    Arrays.fill(row, tick * 2 + id);
+                    store.setRow(tick % rows, row, tick);
+                }
+            }));
+        }
+        List<Thread> readers = new ArrayList<>();
+        for (int reader = 0; reader < 2; reader++) {
+            readers.add(new Thread(() -> {
+                double[] into = new double[capacity];
+                try {
+                    while (writing.get()) {
+                        for (int base = 0; base < rows; base++) {
+                            assertWhole(store.readRow(base, into));
+                        }
+                        StripedRateStore.RowCopies copies = store.rowCopies();
+                        for (int base = 0; base < rows; base++) {
+                            Set<Double> values = new HashSet<>();
+                            for (int quote = 0; quote < capacity; quote++) {
+                                values.add(copies.getRate(base, quote));
+                            }
+                            assertEquals(1, values.size());
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread thread : readers) {
+            thread.start();
+        }
+        for (Thread thread : writers) {
+            thread.start();
+        }
+        for (Thread thread : writers) {
+            thread.join();
+        }
+        writing.set(false);
+        for (Thread thread : readers) {
+            thread.join();
+        }
+        assertTrue(failures.isEmpty(), () -> "failed: " + failures.peek());
+    }
+
+    /**
+     * Asserts that every rate in row was stored by the same write
+     */
+    private static void assertWhole(double[] row) {
+        for (double rate : row) {
+            assertEquals(row[0], rate);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks how many tokens a TokenBucket holds as a fake clock moves, and that callers who find it empty are served
+ * once their reserved tokens have been refilled.
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void startsFullAndEmptiesByPermit() {
+        AtomicLong now = new AtomicLong(-5_000);
+        TokenBucket bucket = new TokenBucket(5, 10, 1, TimeUnit.SECONDS, now::get);
+        assertEquals(5, bucket.getAvailableTokens());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire());
+        }
+        assertFalse(bucket.tryAcquire());
+        assertEquals(0, bucket.getAvailableTokens());
+    }
+
+    @Test
+    public void refillsAtRateUpToCapacity() {
+        AtomicLong now = new AtomicLong();
+        TokenBucket bucket = new TokenBucket(5, 10, 1, TimeUnit.SECONDS, now::get);
+        while (bucket.tryAcquire()) {
+            // empty the bucket
+        }
+
+        // 10 tokens a second is one every 100 ms
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(250));
+        assertEquals(2.5, bucket.getAvailableTokens(), 1e-9);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        assertEquals(0.5, bucket.getAvailableTokens(), 1e-9);
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(bucket.tryAcquire());
+        assertEquals(0, bucket.getAvailableTokens(), 1e-9);
+
+        // an idle bucket fills up to its capacity and no further
+        now.addAndGet(TimeUnit.HOURS.toNanos(1));
+        assertEquals(5, bucket.getAvailableTokens());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(5, bucket.getAvailableTokens());
+    }
+
+    @Test
+    public void reservesTokensAheadOfTime() throws Exception {
+        AtomicLong now = new AtomicLong();
+        TokenBucket bucket = new TokenBucket(1, 20, 1, TimeUnit.SECONDS, now::get);
+        assertTrue(bucket.acquireAsync().isDone());
+
+        // the next two callers each reserve a token the bucket has yet to refill, 50 ms apart
+        CompletableFuture<Void> first = bucket.acquireAsync();
+        CompletableFuture<Void> second = bucket.acquireAsync();
+        assertEquals(-2, bucket.getAvailableTokens(), 1e-9);
+        assertFalse(bucket.tryAcquire());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(75));
+        assertEquals(-0.5, bucket.getAvailableTokens(), 1e-9);
+
+        // the futures wait in real time for as long as the fake clock said when they reserved
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(25));
+        assertEquals(0, bucket.getAvailableTokens(), 1e-9);
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void rejectsInvalidRates() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 1, 0, TimeUnit.SECONDS));
+    }
+}
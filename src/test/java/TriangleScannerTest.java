@@ -0,0 +1,140 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the triangles ranked by TriangleScanner against every triple of currencies of random webs, scanned on the
+ * calling thread and as ForkJoin tasks, and with many triangles tied for the same profit.
+ */
+public class TriangleScannerTest {
+
+    @Test
+    public void smallWebsMatchBruteForce() {
+        Random random = new Random(20);
+        for (int trial = 0; trial < 300; trial++) {
+            RateSnapshot rates = BruteForce.randomRates(random, 3 + random.nextInt(10), 0.97, 1.03, 0.3);
+            assertMatchesBruteForce(rates, 1 + random.nextInt(10), random.nextDouble() * 0.02,
+                    ForkJoinPool.commonPool());
+        }
+    }
+
+    @Test
+    public void parallelScanMatchesBruteForce() {
+        Random random = new Random(21);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int trial = 0; trial < 6; trial++) {
+                int size = TriangleScanner.PARALLEL_THRESHOLD + random.nextInt(20);
+                RateSnapshot rates = BruteForce.randomRates(random, size, 0.97, 1.03, 0.3);
+                assertMatchesBruteForce(rates, 1 + random.nextInt(100), 0.01, pool);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void ranksTiedTriangles() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int size : new int[]{10, TriangleScanner.PARALLEL_THRESHOLD + 6}) {
+                // every rate is the same, so every one of the size * (size - 1) * (size - 2) / 3 triangles ties
+                double[][] matrix = new double[size][size];
+                for (double[] row : matrix) {
+                    Arrays.fill(row, 1.01);
+                }
+                double[] ratesToUSD = new double[size];
+                Arrays.fill(ratesToUSD, 1);
+                RateSnapshot rates = RateSnapshot.of(BruteForce.currencies(size), matrix, ratesToUSD);
+                int triangles = size * (size - 1) * (size - 2) / 3;
+                for (int limit : new int[]{1, 7, triangles - 1, triangles, triangles + 1}) {
+                    List<int[]> found = new TriangleScanner(rates).scan(limit, 0, pool);
+                    assertEquals(Math.min(limit, triangles), found.size());
+                    assertDistinctTriangles(rates, found);
+                    for (int[] triangle : found) {
+                        assertEquals(1.01 * 1.01 * 1.01, BruteForce.product(rates, triangle), 1e-12);
+                    }
+                }
+
+                // the triangles through 2 -> 5 rank ahead of the rest, and those through 1 -> 3 behind them
+                matrix[2][5] = 1.02;
+                matrix[1][3] = 1.005;
+                rates = RateSnapshot.of(BruteForce.currencies(size), matrix, ratesToUSD);
+                for (int limit : new int[]{1, size - 3, size, triangles - size, triangles - 1}) {
+                    assertMatchesBruteForce(rates, limit, 0, pool);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void findsNothingWithoutArbitrage() {
+        RateSnapshot rates = BruteForce.randomRates(new Random(22), 80, 0.9, 0.999, 0.2);
+        assertTrue(new TriangleScanner(rates).scan(10, 0).isEmpty());
+    }
+
+    @Test
+    public void rejectsInvalidLimits() {
+        TriangleScanner scanner = new TriangleScanner(BruteForce.randomRates(new Random(23), 3, 0.9, 1.1, 0));
+        assertThrows(IllegalArgumentException.class, () -> scanner.scan(0, 0));
+    }
+
+    /**
+     * Asserts that the scanned triangles are the limit most profitable triangles that beat 1 + minProfit, most
+     * profitable first
+     */
+    private static void assertMatchesBruteForce(RateSnapshot rates, int limit, double minProfit, ForkJoinPool pool) {
+        List<Double> products = new ArrayList<>();
+        for (int first = 0; first < rates.size(); first++) {
+            for (int second = first + 1; second < rates.size(); second++) {
+                for (int third = first + 1; third < rates.size(); third++) {
+                    if (third != second) {
+                        products.add(BruteForce.product(rates, new int[]{first, second, third}));
+                    }
+                }
+            }
+        }
+        products.sort((product1, product2) -> Double.compare(product2, product1));
+        List<Double> expected = new ArrayList<>();
+        for (double product : products) {
+            if (Math.abs(product - 1 - minProfit) < 1e-9) {
+                // too close to the bar to tell which side rounding puts it on
+                return;
+            }
+            if (product > 1 + minProfit && expected.size() < limit) {
+                expected.add(product);
+            }
+        }
+        List<int[]> triangles = new TriangleScanner(rates).scan(limit, minProfit, pool);
+        assertEquals(expected.size(), triangles.size());
+        assertDistinctTriangles(rates, triangles);
+        for (int i = 0; i < triangles.size(); i++) {
+            assertEquals(expected.get(i), BruteForce.product(rates, triangles.get(i)), 1e-9);
+        }
+    }
+
+    /**
+     * Asserts that every triangle is three different currencies starting from the lowest, and none is reported twice
+     */
+    private static void assertDistinctTriangles(RateSnapshot rates, List<int[]> triangles) {
+        Set<List<Integer>> seen = new HashSet<>();
+        for (int[] triangle : triangles) {
+            assertEquals(3, triangle.length);
+            assertTrue(BruteForce.isSimpleCycle(rates, triangle));
+            assertTrue(triangle[0] < triangle[1] && triangle[0] < triangle[2]);
+            assertTrue(seen.add(List.of(triangle[0], triangle[1], triangle[2])));
+        }
+    }
+}
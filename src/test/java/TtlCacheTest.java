@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks when TtlCache expires and evicts values, that concurrent misses on one key load it once, and that a failed
+ * load never leaves its key stuck in flight.
+ */
+public class TtlCacheTest {
+
+    @Test
+    public void expiresValuesAfterTtl() throws Exception {
+        AtomicLong now = new AtomicLong(1_000);
+        TtlCache<String, Integer> cache = new TtlCache<>(100, 10, now::get);
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals(1, cache.get("USD", loads::incrementAndGet));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100) - 1);
+        assertEquals(1, cache.get("USD", loads::incrementAndGet));
+        assertEquals(1, cache.getHitCount());
+
+        // the value expires exactly ttl after it was loaded, and the next lookup loads it again
+        now.incrementAndGet();
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.get("USD", loads::incrementAndGet));
+        assertEquals(2, cache.getMissCount());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(2, cache.get("USD", loads::incrementAndGet));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedValue() throws Exception {
+        TtlCache<String, String> cache = new TtlCache<>(60_000, 3, () -> 0);
+        List<String> loaded = new ArrayList<>();
+        for (String key : List.of("USD", "EUR", "GBP")) {
+            load(cache, key, loaded);
+        }
+        // using USD makes EUR the least recently used
+        load(cache, "USD", loaded);
+        load(cache, "JPY", loaded);
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(List.of("USD", "EUR", "GBP", "JPY"), loaded);
+
+        for (String key : List.of("USD", "GBP", "JPY")) {
+            load(cache, key, loaded);
+        }
+        assertEquals(4, loaded.size());
+        load(cache, "EUR", loaded);
+        assertEquals(List.of("USD", "EUR", "GBP", "JPY", "EUR"), loaded);
+        // EUR pushed out USD, which was least recently used after the lookups of GBP and JPY
+        assertEquals(2, cache.getEvictionCount());
+        load(cache, "USD", loaded);
+        assertEquals("USD", loaded.get(loaded.size() - 1));
+    }
+
+    @Test
+    public void concurrentMissesLoadOnce() throws Exception {
+        int threads = 8;
+        TtlCache<String, Integer> cache = new TtlCache<>(60_000, 10);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                results.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    return cache.get("USD", () -> {
+                        // hold the load until every other thread is waiting for it
+                        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                        while (cache.getCoalescedCount() < threads - 1 && System.nanoTime() < deadline) {
+                            Thread.sleep(1);
+                        }
+                        return loads.incrementAndGet();
+                    });
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(1, result.get(20, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(threads - 1, cache.getCoalescedCount());
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void loadsAgainAfterLoaderThrowsError() throws Exception {
+        TtlCache<String, Integer> cache = new TtlCache<>(60_000, 10);
+        assertThrows(AssertionError.class, () -> cache.get("USD", () -> {
+            throw new AssertionError("load failed");
+        }));
+        assertEquals(5, cache.get("USD", () -> 5));
+    }
+
+    @Test
+    public void loadsAgainAfterLoaderThrowsException() throws Exception {
+        TtlCache<String, Integer> cache = new TtlCache<>(60_000, 10);
+        assertThrows(IllegalStateException.class, () -> cache.get("USD", () -> {
+            throw new IllegalStateException("load failed");
+        }));
+        assertEquals(5, cache.get("USD", () -> 5));
+        assertEquals(5, cache.get("USD", () -> 6));
+    }
+
+    /**
+     * Looks up key, adding it to loaded if the lookup ran the loader
+     */
+    private static void load(TtlCache<String, String> cache, String key, List<String> loaded) throws Exception {
+        assertEquals(key, cache.get(key, () -> {
+            loaded.add(key);
+            return key;
+        }));
+    }
+}